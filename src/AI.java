@@ -1,3 +1,4 @@
+import java.util.Arrays;
 import java.util.Random;
 
 public class AI {
@@ -14,24 +15,33 @@ public class AI {
     private static final int ROOK_VALUE = 500;
     private static final int QUEEN_VALUE = 900;
     private static final int KING_VALUE = 20000;
+    // 评估分的单位：一厘兵 = EVAL_SCALE 个评估单位（一个兵 = 100 * EVAL_SCALE）
+    static final int EVAL_SCALE = 100;
+    // 按棋子类型（1 兵 ... 6 王）索引的子力价值，下标 0 为空格
+    static final int[] PIECE_VALUES = {0, PAWN_VALUE, KNIGHT_VALUE, BISHOP_VALUE, ROOK_VALUE, QUEEN_VALUE, KING_VALUE};
+
+    // 走法的打包格式：0-5 位终点，6-11 位起点，12-13 位升变棋子（0 后、1 马、2 象、3 车）
+    // 升变为后记作 0，所以只有 12 位的走法照旧表示升变为后；搜索只生成升变为后，低升变来自对方的走法（UCI、服务器、GUI）
+    static final int PROMOTION_SHIFT = 12;
+    private static final int[] PROMOTION_PIECES = {W_QUEEN, W_KNIGHT, W_BISHOP, W_ROOK};
+    // 坐标记法的升变后缀，下标与 PROMOTION_PIECES 一致
+    private static final String PROMOTION_CHARS = "qnbr";
 
     // 特殊情况的分值：杀棋分和将军奖励
-    private static final int MATE_VALUE = 20000000;
+    static final int MATE_VALUE = 20000000;
     private static final int CHECK_BONUS = 150;
 
-    // 置换表（Transposition Table）配置，用于存储已搜索过的盘面
-    private static final int TT_SIZE = 1 << 20;
-    private static final int TT_MASK = TT_SIZE - 1;
-
-    private static long[] ttHashes = new long[TT_SIZE];
-    private static int[] ttScores = new int[TT_SIZE];
-    private static byte[] ttDepths = new byte[TT_SIZE];
-    private static byte[] ttFlags = new byte[TT_SIZE]; // 标识分值类型：1代表精确值，2代表下界，3代表上界
+    // 置换表（Transposition Table）的默认大小，可在运行时按 MB 调整
+    static final int DEFAULT_HASH_MB = 16;
 
     // Zobrist Hashing 用于快速生成盘面的唯一哈希值
     private static final long[][] ZOBRIST_KEYS = new long[64][13];
     private static final long SIDE_TO_MOVE_KEY;
-    private static long currentBoardHash = 0;
+    // 易位权（16 种组合各一个键）和过路兵所在列的键：摆放相同但这些状态不同的局面不能共用置换表条目
+    private static final long[] CASTLING_KEYS = new long[16];
+    private static final long[] EN_PASSANT_KEYS = new long[8];
+    // 棋子离开或到达某格后保留的易位权：王和车的原位各清掉对应的位，其余格子不影响
+    private static final int[] CASTLING_MASKS = new int[64];
 
     // 初始化 Zobrist 随机数序列
     static {
@@ -42,306 +52,391 @@ public class AI {
             }
         }
         SIDE_TO_MOVE_KEY = rnd.nextLong();
+        // 没有易位权时键为 0，这样只有棋子的局面哈希值不变
+        for (int i = 1; i < 16; i++) CASTLING_KEYS[i] = rnd.nextLong();
+        for (int i = 0; i < 8; i++) EN_PASSANT_KEYS[i] = rnd.nextLong();
+
+        Arrays.fill(CASTLING_MASKS, Position.ALL_CASTLING);
+        CASTLING_MASKS[0] &= ~Position.WHITE_OOO;
+        CASTLING_MASKS[4] &= ~(Position.WHITE_OO | Position.WHITE_OOO);
+        CASTLING_MASKS[7] &= ~Position.WHITE_OO;
+        CASTLING_MASKS[56] &= ~Position.BLACK_OOO;
+        CASTLING_MASKS[60] &= ~(Position.BLACK_OO | Position.BLACK_OOO);
+        CASTLING_MASKS[63] &= ~Position.BLACK_OO;
     }
 
-    // 棋子位置评估表 (Piece-Square Tables)，根据棋子所处位置进行加减分
-    // 例如兵靠近对方底线分值更高，马在中心位置分值更高
-    private static final int[][] PAWN_PST = {
-            {0,  0,  0,  0,  0,  0,  0,  0},
-            {50, 50, 50, 50, 50, 50, 50, 50},
-            {10, 10, 20, 30, 30, 20, 10, 10},
-            {5,  5,  10, 25, 25, 10, 5,  5},
-            {0,  0,  5,  20, 20, 5,  0,  0},
-            {5, -5, -10, 0,  0, -10, -5, 5},
-            {5,  10, 10, -20, -20, 10, 10, 5},
-            {0,  0,  0,  0,  0,  0,  0,  0}
+    // 棋子位置评估表 (Piece-Square Tables)，中局（MG）和残局（EG）各一套，单位为厘兵
+    // 表的第一行是对方底线（白方视角），黑方查表时上下翻转
+    // 这些数值来自 PeSTO（Ronald Friederich 调出来的一套表），同样是前辈的经验，不是自己瞎写的
+    private static final int[] MG_PIECE_VALUES = {0, 82, 337, 365, 477, 1025, 0};
+    private static final int[] EG_PIECE_VALUES = {0, 94, 281, 297, 512, 936, 0};
+
+    private static final int[][] MG_PAWN_PST = {
+            {0,   0,   0,   0,   0,   0,   0,   0},
+            {98,  134, 61,  95,  68,  126, 34,  -11},
+            {-6,  7,   26,  31,  65,  56,  25,  -20},
+            {-14, 13,  6,   21,  23,  12,  17,  -23},
+            {-27, -2,  -5,  12,  17,  6,   10,  -25},
+            {-26, -4,  -4,  -10, 3,   3,   33,  -12},
+            {-35, -1,  -20, -23, -15, 24,  38,  -22},
+            {0,   0,   0,   0,   0,   0,   0,   0}
     };
-    private static final int[][] KNIGHT_PST = {
-            {-50, -40, -30, -30, -30, -30, -40, -50},
-            {-40, -20, 0,   0,   0,   0,   -20, -40},
-            {-30, 0,   10,  15,  15,  10,  0,   -30},
-            {-30, 5,   15,  20,  20,  15,  5,   -30},
-            {-30, 0,   15,  20,  20,  15,  0,   -30},
-            {-30, 5,   10,  15,  15,  10,  5,   -30},
-            {-40, -20, 0,   5,   5,   0,   -20, -40},
-            {-50, -40, -30, -30, -30, -30, -40, -50}
+    private static final int[][] EG_PAWN_PST = {
+            {0,   0,   0,   0,   0,   0,   0,   0},
+            {178, 173, 158, 134, 147, 132, 165, 187},
+            {94,  100, 85,  67,  56,  53,  82,  84},
+            {32,  24,  13,  5,   -2,  4,   17,  17},
+            {13,  9,   -3,  -7,  -7,  -8,  3,   -1},
+            {4,   7,   -6,  1,   0,   -5,  -1,  -8},
+            {13,  8,   8,   10,  13,  0,   2,   -7},
+            {0,   0,   0,   0,   0,   0,   0,   0}
     };
-    private static final int[][] BISHOP_PST = {
-            {-20, -10, -10, -10, -10, -10, -10, -20},
-            {-10, 0,   0,   0,   0,   0,   0,   -10},
-            {-10, 0,   5,   10,  10,  5,   0,   -10},
-            {-10, 5,   5,   10,  10,  5,   5,   -10},
-            {-10, 0,   10,  10,  10,  10,  0,   -10},
-            {-10, 10,  10,  10,  10,  10,  10,  -10},
-            {-10, 5,   0,   0,   0,   0,   5,   -10},
-            {-20, -10, -10, -10, -10, -10, -10, -20}
+    private static final int[][] MG_KNIGHT_PST = {
+            {-167, -89, -34, -49, 61,  -97, -15, -107},
+            {-73,  -41, 72,  36,  23,  62,  7,   -17},
+            {-47,  60,  37,  65,  84,  129, 73,  44},
+            {-9,   17,  19,  53,  37,  69,  18,  22},
+            {-13,  4,   16,  13,  28,  19,  21,  -8},
+            {-23,  -9,  12,  10,  19,  17,  25,  -16},
+            {-29,  -53, -12, -3,  -1,  18,  -14, -19},
+            {-105, -21, -58, -33, -17, -28, -19, -23}
     };
-    private static final int[][] ROOK_PST = {
-            {0,  0,  0,  0,  0,  0,  0,  0},
-            {5,  10, 10, 10, 10, 10, 10, 5},
-            {-5, 0,  0,  0,  0,  0,  0,  -5},
-            {-5, 0,  0,  0,  0,  0,  0,  -5},
-            {-5, 0,  0,  0,  0,  0,  0,  -5},
-            {-5, 0,  0,  0,  0,  0,  0,  -5},
-            {-5, 0,  0,  0,  0,  0,  0,  -5},
-            {0,  0,  0,  5,  5,  0,  0,  0}
+    private static final int[][] EG_KNIGHT_PST = {
+            {-58, -38, -13, -28, -31, -27, -63, -99},
+            {-25, -8,  -25, -2,  -9,  -25, -24, -52},
+            {-24, -20, 10,  9,   -1,  -9,  -19, -41},
+            {-17, 3,   22,  22,  22,  11,  8,   -18},
+            {-18, -6,  16,  25,  16,  17,  4,   -18},
+            {-23, -3,  -1,  15,  10,  -3,  -20, -22},
+            {-42, -20, -10, -5,  -2,  -20, -23, -44},
+            {-29, -51, -23, -15, -22, -18, -50, -64}
     };
-    private static final int[][] QUEEN_PST = {
-            {-20, -10, -10, -5, -5, -10, -10, -20},
-            {-10, 0,   0,   0,   0,   0,   0,   -10},
-            {-10, 0,   5,   5,   5,   5,   0,   -10},
-            {-5,  0,   5,   5,   5,   5,   0,   -5},
-            {0,   0,   5,   5,   5,   5,   0,   0},
-            {-10, 5,   5,   5,   5,   5,   0,   -10},
-            {-10, 0,   5,   0,   0,   0,   0,   -10},
-            {-20, -10, -10, -5, -5, -10, -10, -20}
+    private static final int[][] MG_BISHOP_PST = {
+            {-29, 4,   -82, -37, -25, -42, 7,   -8},
+            {-26, 16,  -18, -13, 30,  59,  18,  -47},
+            {-16, 37,  43,  40,  35,  50,  37,  -2},
+            {-4,  5,   19,  50,  37,  37,  7,   -2},
+            {-6,  13,  13,  26,  34,  12,  10,  4},
+            {0,   15,  15,  15,  14,  27,  18,  10},
+            {4,   15,  16,  0,   7,   21,  33,  1},
+            {-33, -3,  -14, -21, -13, -12, -39, -21}
     };
-    private static final int[][] KING_PST = {
-            {-30, -40, -40, -50, -50, -40, -40, -30},
-            {-30, -40, -40, -50, -50, -40, -40, -30},
-            {-30, -40, -40, -50, -50, -40, -40, -30},
-            {-30, -40, -40, -50, -50, -40, -40, -30},
-            {-20, -30, -30, -40, -40, -30, -30, -20},
-            {-10, -20, -20, -20, -20, -20, -20, -10},
-            {20,  30,  10,  0,   0,   10,  30,  20},
-            {20,  30,  30,  10,  10,  30,  30,  20}
+    private static final int[][] EG_BISHOP_PST = {
+            {-14, -21, -11, -8,  -7,  -9,  -17, -24},
+            {-8,  -4,  7,   -12, -3,  -13, -4,  -14},
+            {2,   -8,  0,   -1,  -2,  6,   0,   4},
+            {-3,  9,   12,  9,   14,  10,  3,   2},
+            {-6,  3,   13,  19,  7,   10,  -3,  -9},
+            {-12, -3,  8,   10,  13,  3,   -7,  -15},
+            {-14, -18, -7,  -1,  4,   -9,  -15, -27},
+            {-23, -9,  -23, -5,  -9,  -16, -5,  -17}
     };
-    //这些数值是网上找的不是自己瞎写的，前辈大师下棋得出的经验
-    private static float moveDelay = 0f;
-    private static final float DELAY_TIME = 1.5f;
-    private static GameBoard.Move cachedMove = null;
-    private static boolean isWaiting = false;
-
-    // 外部调用入口：将字符串数组棋盘转为整型棋盘，通过搜索获取最优移动
-    public static GameBoard.Move getBestMove(String[][] strBoard) {
-        int[] board = convertToIntBoard(strBoard);
-        currentBoardHash = computeFullHash(board);
-
-        // 设置搜索深度为5层
-        int bestMoveInt = findBestMoveInternal(board, 5);
-
-        // 没找到招法，可能是被将死或者闷宫
-        if (bestMoveInt == 0) return null;
+    private static final int[][] MG_ROOK_PST = {
+            {32,  42,  32,  51,  63,  9,   31,  43},
+            {27,  32,  58,  62,  80,  67,  26,  44},
+            {-5,  19,  26,  36,  17,  45,  61,  16},
+            {-24, -11, 7,   26,  24,  35,  -8,  -20},
+            {-36, -26, -12, -1,  9,   -7,  6,   -23},
+            {-45, -25, -16, -17, 3,   0,   -5,  -33},
+            {-44, -16, -20, -9,  -1,  11,  -6,  -71},
+            {-19, -13, 1,   17,  16,  7,   -37, -26}
+    };
+    private static final int[][] EG_ROOK_PST = {
+            {13,  10,  18,  15,  12,  12,  8,   5},
+            {11,  13,  13,  11,  -3,  3,   8,   3},
+            {7,   7,   7,   5,   4,   -3,  -5,  -3},
+            {4,   3,   13,  1,   2,   1,   -1,  2},
+            {3,   5,   8,   4,   -5,  -6,  -8,  -11},
+            {-4,  0,   -5,  -1,  -7,  -12, -8,  -16},
+            {-6,  -6,  0,   2,   -9,  -9,  -11, -3},
+            {-9,  2,   3,   -1,  -5,  -13, 4,   -20}
+    };
+    private static final int[][] MG_QUEEN_PST = {
+            {-28, 0,   29,  12,  59,  44,  43,  45},
+            {-24, -39, -5,  1,   -16, 57,  28,  54},
+            {-13, -17, 7,   8,   29,  56,  47,  57},
+            {-27, -27, -16, -16, -1,  17,  -2,  1},
+            {-9,  -26, -9,  -10, -2,  -4,  3,   -3},
+            {-14, 2,   -11, -2,  -5,  2,   14,  5},
+            {-35, -8,  11,  2,   8,   15,  -3,  1},
+            {-1,  -18, -9,  10,  -15, -25, -31, -50}
+    };
+    private static final int[][] EG_QUEEN_PST = {
+            {-9,  22,  22,  27,  27,  19,  10,  20},
+            {-17, 20,  32,  41,  58,  25,  30,  0},
+            {-20, 6,   9,   49,  47,  35,  19,  9},
+            {3,   22,  24,  45,  57,  40,  57,  36},
+            {-18, 28,  19,  47,  31,  34,  39,  23},
+            {-16, -27, 15,  6,   9,   17,  10,  5},
+            {-22, -23, -30, -16, -16, -23, -36, -32},
+            {-33, -28, -22, -43, -5,  -32, -20, -41}
+    };
+    private static final int[][] MG_KING_PST = {
+            {-65, 23,  16,  -15, -56, -34, 2,   13},
+            {29,  -1,  -20, -7,  -8,  -4,  -38, -29},
+            {-9,  24,  2,   -16, -20, 6,   22,  -22},
+            {-17, -20, -12, -27, -30, -25, -14, -36},
+            {-49, -1,  -27, -39, -46, -44, -33, -51},
+            {-14, -14, -22, -46, -44, -30, -15, -27},
+            {1,   7,   -8,  -64, -43, -16, 9,   8},
+            {-15, 36,  12,  -54, 8,   -28, 24,  14}
+    };
+    // 残局的王表鼓励王走向中心，取代原来按棋子数突然切换的残局评估
+    private static final int[][] EG_KING_PST = {
+            {-74, -35, -18, -18, -11, 15,  4,   -17},
+            {-12, 17,  14,  17,  17,  38,  23,  11},
+            {10,  17,  23,  15,  20,  45,  44,  13},
+            {-8,  22,  24,  27,  26,  33,  26,  3},
+            {-18, -4,  21,  24,  27,  23,  9,   -11},
+            {-19, -3,  11,  21,  23,  16,  7,   -9},
+            {-27, -11, 4,   13,  14,  4,   -5,  -17},
+            {-53, -34, -21, -11, -28, -14, -24, -43}
+    };
+    private static final int[][][] MG_PST = {null, MG_PAWN_PST, MG_KNIGHT_PST, MG_BISHOP_PST, MG_ROOK_PST, MG_QUEEN_PST, MG_KING_PST};
+    private static final int[][][] EG_PST = {null, EG_PAWN_PST, EG_KNIGHT_PST, EG_BISHOP_PST, EG_ROOK_PST, EG_QUEEN_PST, EG_KING_PST};
 
-        int from = (bestMoveInt >> 6) & 0x3F;
-        int to = bestMoveInt & 0x3F;
-        return new GameBoard.Move(from / 8, from % 8, to / 8, to % 8);
-    }
+    // 局面阶段：马象各 1、车 2、后 4，开局满子时为 24；估值按阶段在中局分和残局分之间线性插值
+    static final int MAX_PHASE = 24;
+    static final int[] PHASE_WEIGHTS = new int[13];
 
-    // 模拟思考延迟，避免AI瞬间秒走，提升体验
-    public static void startMoveDelay(GameBoard.Move move) {
-        if (move == null) return; // 防止外部传入null导致赋值异常
-        cachedMove = move;
-        moveDelay = DELAY_TIME;
-        isWaiting = true;
-    }
+    // 子力分和位置分合并成表（以白方为正），下标为 [棋子编码 + 6][格子]
+    // Position 在放上、移走棋子时增量累加中局分、残局分和阶段，叶子节点不必再扫描整个棋盘
+    static final int[][] MG_PSQT = new int[13][64];
+    static final int[][] EG_PSQT = new int[13][64];
 
-    // 在游戏渲染循环中检查延迟是否结束
-    public static boolean checkDelay(float deltaTime) { // 由外部传入deltaTime，避免依赖Gdx崩溃
-        if (!isWaiting) return false;
-        moveDelay -= deltaTime;
-        if (moveDelay <= 0) {
-            isWaiting = false;
-            return true;
+    static {
+        int[] phaseByType = {0, 0, 1, 1, 2, 4, 0};
+        for (int p = B_KING; p <= W_KING; p++) {
+            if (p == EMPTY) continue;
+            int type = Math.abs(p);
+            int sign = p > 0 ? 1 : -1;
+            PHASE_WEIGHTS[p + 6] = phaseByType[type];
+            for (int sq = 0; sq < 64; sq++) {
+                int tableRow = p > 0 ? 7 - sq / 8 : sq / 8;
+                int c = sq % 8;
+                MG_PSQT[p + 6][sq] = sign * (MG_PIECE_VALUES[type] + MG_PST[type][tableRow][c]);
+                EG_PSQT[p + 6][sq] = sign * (EG_PIECE_VALUES[type] + EG_PST[type][tableRow][c]);
+            }
         }
-        return false;
     }
 
-    public static GameBoard.Move getCachedMove() { return cachedMove; }
-    public static void resetDelay() { moveDelay = 0f; cachedMove = null; isWaiting = false; }
-
-    // AI搜索的第一层逻辑：遍历所有合法移动并调用Minimax
-    private static int findBestMoveInternal(int[] board, int maxDepth) {
-        int bestVal = Integer.MIN_VALUE + 1;
-        int bestMove = 0;
+    // 调试开关（-Dchess.debugEval=true）：每次估值都用整盘重算的结果核对增量值，不一致时抛出异常
+    private static final boolean DEBUG_EVAL = Boolean.getBoolean("chess.debugEval");
 
-        // 生成黑方AI的所有移动
-        IntList moves = generateMoves(board, false);
-        orderMoves(board, moves); // 移动排序优化剪枝效率
+    // 单个搜索线程的最大层数（走法缓冲区的大小）
+    static final int MAX_PLY = 64;
 
-        for (int i = 0; i < moves.size; i++) {
-            int move = moves.get(i);
-            long undoInfo = makeMove(board, move);
+    // 不计时的固定深度搜索默认层数：空着剪枝和 LMR 加入后，原来搜 5 层的时间能搜到 9 层以上
+    static final int DEFAULT_SEARCH_DEPTH = 9;
 
-            // 走完后检查自己的王是否在对方火力下，不能送王
-            if (isSquareAttacked(board, findKing(board, false), true)) {
-                unmakeMove(board, move, undoInfo);
-                continue;
-            }
-
-            // 进入递归搜索
-            int val = minimax(board, maxDepth - 1, Integer.MIN_VALUE + 100, Integer.MAX_VALUE - 100, true);
-
-            unmakeMove(board, move, undoInfo);
-
-            if (val > bestVal) {
-                bestVal = val;
-                bestMove = move;
-            }
-        }
-        return bestMove;
+    // 默认置换表和默认引擎：AI 的静态搜索方法都是这个引擎的外观，只适合一个进程里只有一盘棋的场景
+    // 需要同时进行多盘棋时，每盘棋各自 new 一个 Engine；放在内部类里，第一次用到时才分配，
+    // 只用走法生成和估值的 UCI、服务器、perft 不会创建它们
+    private static final class Defaults {
+        static final TranspositionTable TT = new TranspositionTable(DEFAULT_HASH_MB);
+        static final Engine ENGINE = new Engine(TT);
     }
 
-    // 带有Alpha-Beta剪枝和置换表的极大极小值搜索
-    private static int minimax(int[] board, int depth, int alpha, int beta, boolean isMaximizing) {
-        // 首先尝试从置换表中读取结果
-        int score = readTT(currentBoardHash, depth, alpha, beta);
-        if (score != Integer.MIN_VALUE) {
-            return score;
-        }
-
-        int alphaOriginal = alpha;
-
-        // 搜索到底部，返回盘面估值
-        if (depth <= 0) { // depth<=0 增加稳定性
-            int val = -evaluateBoard(board);
-            writeTT(currentBoardHash, 0, val, (byte)1);
-            return val;
-        }
-
-        IntList moves = generateMoves(board, isMaximizing);
-        int legalMovesCount = 0;
-        orderMoves(board, moves);
+    static TranspositionTable defaultTable() { return Defaults.TT; }
 
-        int bestVal = isMaximizing ? Integer.MIN_VALUE + 1000 : Integer.MAX_VALUE - 1000;
+    static Engine defaultEngine() { return Defaults.ENGINE; }
 
-        for (int i = 0; i < moves.size; i++) {
-            int move = moves.get(i);
-            long undoInfo = makeMove(board, move);
+    // 外部调用入口：将字符串数组棋盘转为整型棋盘，通过搜索获取 whiteToMove 一方的最优移动
+    // 只有棋盘时不知道王车是否动过，王和车在原位就当作还能易位
+    public static GameBoard.Move getBestMove(String[][] strBoard, boolean whiteToMove) {
+        Position pos = toPosition(strBoard, whiteToMove, Position.ALL_CASTLING, -1, 0);
 
-            int kingPos = findKing(board, isMaximizing);
-            // 排除导致己方王被攻击的非法招法
-            if (isSquareAttacked(board, kingPos, !isMaximizing)) {
-                unmakeMove(board, move, undoInfo);
-                continue;
-            }
-            legalMovesCount++;
+        // 固定深度搜索 DEFAULT_SEARCH_DEPTH 层
+        return toMove(search(pos, DEFAULT_SEARCH_DEPTH));
+    }
 
-            int val = minimax(board, depth - 1, alpha, beta, !isMaximizing);
+    // 按费舍尔计时的剩余时间和加秒（单位：秒）迭代加深搜索
+    public static GameBoard.Move getBestMove(String[][] strBoard, boolean whiteToMove, float timeLeft, float increment) {
+        return getBestMove(toPosition(strBoard, whiteToMove, Position.ALL_CASTLING, -1, 0), timeLeft, increment);
+    }
 
-            unmakeMove(board, move, undoInfo);
+    // 在完整局面（含易位权、过路兵格）上用默认引擎搜索
+    public static GameBoard.Move getBestMove(Position pos, float timeLeft, float increment) {
+        return getBestMove(Defaults.ENGINE, pos, timeLeft, increment);
+    }
 
-            if (isMaximizing) {
-                if (val > bestVal) bestVal = val;
-                if (val > alpha) alpha = val;
-            } else {
-                if (val < bestVal) bestVal = val;
-                if (val < beta) beta = val;
-            }
+    // 用指定的引擎搜索，GameBoard 等需要互相隔离的对局走这个入口
+    public static GameBoard.Move getBestMove(Engine engine, Position pos, float timeLeft, float increment) {
+        return toMove(engine.think(pos, (long) (timeLeft * 1000), (long) (increment * 1000)));
+    }
 
-            // Alpha-Beta 剪枝
-            if (beta <= alpha) break;
-        }
+    // 把打包的整型走法转为游戏逻辑层使用的 Move 对象
+    private static GameBoard.Move toMove(int bestMoveInt) {
+        // 没找到招法，可能是被将死或者闷宫
+        if (bestMoveInt == 0) return null;
 
-        // 处理特殊结尾：将军死或和棋
-        if (legalMovesCount == 0) {
-            int kingPos = findKing(board, isMaximizing);
-            if (isSquareAttacked(board, kingPos, !isMaximizing)) {
-                // 将军死的分数要考虑深度，鼓励尽早杀棋
-                return isMaximizing ? (-MATE_VALUE - depth) : (MATE_VALUE + depth);
-            } else {
-                return 0; // 逼和
-            }
-        }
+        int from = (bestMoveInt >> 6) & 0x3F;
+        int to = bestMoveInt & 0x3F;
+        return new GameBoard.Move(from / 8, from % 8, to / 8, to % 8);
+    }
 
-        // 将搜索结果记录到置换表
-        byte flag;
-        if (bestVal <= alphaOriginal) {
-            flag = 3; // 上界
-        } else if (bestVal >= beta) {
-            flag = 2; // 下界
-        } else {
-            flag = 1; // 精确值
-        }
-        writeTT(currentBoardHash, depth, bestVal, flag);
+    // 把打包的走法写成坐标记法，例如 e7e5（0 写作 0000）；低升变带上后缀（e7e8n），升变为后不带后缀
+    static String moveToString(int move) {
+        if (move == 0) return "0000";
+        int from = (move >> 6) & 0x3F;
+        int to = move & 0x3F;
+        String text = "" + (char) ('a' + from % 8) + (char) ('1' + from / 8) + (char) ('a' + to % 8) + (char) ('1' + to / 8);
+        int promotion = (move >> PROMOTION_SHIFT) & 3;
+        return promotion == 0 ? text : text + PROMOTION_CHARS.charAt(promotion);
+    }
 
-        return bestVal;
+    // moveToString 的逆操作：前四个字符是起点和终点，可选的第五个字符 q/n/b/r 是升变棋子
+    // 不检查格式和合法性，调用方需要先校验（或与生成的合法走法比对）
+    static int parseMove(String s) {
+        int from = (s.charAt(1) - '1') * 8 + (s.charAt(0) - 'a');
+        int to = (s.charAt(3) - '1') * 8 + (s.charAt(2) - 'a');
+        int promotion = s.length() > 4 ? Math.max(0, PROMOTION_CHARS.indexOf(s.charAt(4))) : 0;
+        return (promotion << PROMOTION_SHIFT) | (from << 6) | to;
     }
 
-    // 计算哈希表索引
-    private static int getTTIndex(long hash) {
-        return (int)(hash & TT_MASK);
+    // 以下静态方法都委托给默认引擎，保持原有的调用方式（基准测试、单盘对局）
+    public static void setThreads(int threads) { Defaults.ENGINE.setThreads(threads); }
+    public static int getThreads() { return Defaults.ENGINE.getThreads(); }
+    public static void setHashSize(int sizeMb) { Defaults.ENGINE.setHashSize(sizeMb); }
+
+    // 在给定局面上为走子方搜索到固定深度，返回打包的走法（0 表示无棋可走）
+    static int search(Position pos, int maxDepth) { return Defaults.ENGINE.search(pos, maxDepth); }
+    static int search(Position root, int maxDepth, TimeManager tm) { return Defaults.ENGINE.search(root, maxDepth, tm); }
+
+    public static void requestStop() { Defaults.ENGINE.requestStop(); }
+    public static void clearStop() { Defaults.ENGINE.clearStop(); }
+
+    public static int getCompletedDepth() { return Defaults.ENGINE.getCompletedDepth(); }
+    public static long getProgressNodes() { return Defaults.ENGINE.getProgressNodes(); }
+    public static double getFirstMoveCutoffRate() { return Defaults.ENGINE.getFirstMoveCutoffRate(); }
+    public static long getQsearchNodes() { return Defaults.ENGINE.getQsearchNodes(); }
+    public static int getHashfull() { return Defaults.ENGINE.getHashfull(); }
+    public static double getTTHitRate() { return Defaults.ENGINE.getTTHitRate(); }
+    public static double getPawnHashHitRate() { return Defaults.ENGINE.getPawnHashHitRate(); }
+    public static long getEvalCalls() { return Defaults.ENGINE.getEvalCalls(); }
+    public static double getEvalCacheHitRate() { return Defaults.ENGINE.getEvalCacheHitRate(); }
+    public static double getTTOverwriteRate() { return Defaults.ENGINE.getTTOverwriteRate(); }
+    public static double getHashMoveCutoffRate() { return Defaults.ENGINE.getHashMoveCutoffRate(); }
+    static void setLegacyOrdering(boolean legacy) { Defaults.ENGINE.setLegacyOrdering(legacy); }
+
+    // 重新计算整个局面的 Zobrist 哈希值：棋子摆放、走子方（黑方走时异或一次）、易位权和过路兵列
+    static long computeFullHash(Position pos) {
+        long h = 0;
+        long occ = pos.occupied;
+        while (occ != 0) {
+            int sq = Bitboards.lsb(occ);
+            occ &= occ - 1;
+            h ^= ZOBRIST_KEYS[sq][pos.board[sq] + 6];
+        }
+        if (!pos.whiteToMove) h ^= SIDE_TO_MOVE_KEY;
+        h ^= CASTLING_KEYS[pos.castling];
+        if (pos.epSquare >= 0) h ^= EN_PASSANT_KEYS[pos.epSquare & 7];
+        return h;
     }
 
-    // 从置换表中读取存储的状态
-    private static int readTT(long hash, int depth, int alpha, int beta) {
-        int idx = getTTIndex(hash);
-        if (ttHashes[idx] == hash) {
-            if (ttDepths[idx] >= depth || Math.abs(ttScores[idx]) > MATE_VALUE - 1000) {
-                int score = ttScores[idx];
-                byte flag = ttFlags[idx];
-                if (flag == 1) return score;
-                if (flag == 2 && score >= beta) return score;
-                if (flag == 3 && score <= alpha) return score;
-            }
+    // 重新计算只包含兵的 Zobrist 哈希值
+    static long computePawnHash(Position pos) {
+        long h = 0;
+        long pawns = pos.pieces(W_PAWN, true) | pos.pieces(W_PAWN, false);
+        while (pawns != 0) {
+            int sq = Bitboards.lsb(pawns);
+            pawns &= pawns - 1;
+            h ^= ZOBRIST_KEYS[sq][pos.board[sq] + 6];
         }
-        return Integer.MIN_VALUE;
+        return h;
     }
 
-    // 写入搜索结果到置换表
-    private static void writeTT(long hash, int depth, int score, byte flag) {
-        int idx = getTTIndex(hash);
-        ttHashes[idx] = hash;
-        ttScores[idx] = score;
-        ttDepths[idx] = (byte)depth;
-        ttFlags[idx] = flag;
+    // 空着：什么都不走，只把走子权交给对方（用于空着剪枝），过路兵机会随之消失
+    // 半回合数清零，重复局面的查找不会跨过空着（空着前后走子方的奇偶对不上）
+    // 返回原来的过路兵格和半回合数，交给 unmakeNullMove 撤销
+    static int makeNullMove(Position pos) {
+        int ep = pos.epSquare;
+        int undo = (ep + 1) | (pos.halfmoveClock << 7);
+        pos.pushHistory();
+        pos.halfmoveClock = 0;
+        if (ep >= 0) {
+            pos.hash ^= EN_PASSANT_KEYS[ep & 7];
+            pos.epSquare = -1;
+        }
+        pos.whiteToMove = !pos.whiteToMove;
+        pos.hash ^= SIDE_TO_MOVE_KEY;
+        return undo;
     }
 
-    // 重新计算整个棋盘的 Zobrist 哈希值
-    private static long computeFullHash(int[] board) {
-        long h = 0;
-        for (int i = 0; i < 64; i++) {
-            if (board[i] != EMPTY) {
-                int piece = board[i];
-                h ^= ZOBRIST_KEYS[i][piece + 6];
-            }
+    static void unmakeNullMove(Position pos, int undo) {
+        int ep = (undo & 0x7F) - 1;
+        pos.historySize--;
+        pos.halfmoveClock = undo >>> 7;
+        pos.whiteToMove = !pos.whiteToMove;
+        pos.hash ^= SIDE_TO_MOVE_KEY;
+        if (ep >= 0) {
+            pos.hash ^= EN_PASSANT_KEYS[ep & 7];
+            pos.epSquare = ep;
         }
-        return h;
     }
 
-    // 执行移动：更新数组，处理吃子、升变、王车易位、过路兵，并增量更新哈希值
-    private static long makeMove(int[] board, int move) {
+    // 一方是否还有兵和王以外的棋子；只剩兵的残局容易出现"谁走谁亏"，空着剪枝在那里不可靠
+    static boolean hasNonPawnMaterial(Position pos, boolean isWhite) {
+        return (pos.colors[isWhite ? Position.WHITE : Position.BLACK]
+                & ~pos.pieces(W_PAWN, isWhite) & ~pos.pieces(W_KING, isWhite)) != 0;
+    }
+
+    // 执行移动：更新位棋盘，处理吃子、升变、王车易位、过路兵，并增量更新哈希值和局面状态
+    // 返回撤销所需的信息：0-7 位被吃的棋子，8-10 位走法类型，11-14 位原易位权，15-21 位原过路兵格 + 1，22 位起为原半回合数
+    static long makeMove(Position pos, int move) {
         int from = (move >> 6) & 0x3F;
         int to = move & 0x3F;
-        int piece = board[from];
-        int captured = board[to];
+        int piece = pos.board[from];
+        int captured = pos.board[to];
 
         boolean isEnPassant = false;
         boolean isCastling = false;
         boolean isPromotion = false;
 
+        int oldCastling = pos.castling;
+        int oldEp = pos.epSquare;
+        int oldHalfmove = pos.halfmoveClock;
+        pos.pushHistory();
+
+        // 上一步留下的过路兵机会只保留一步
+        if (oldEp >= 0) {
+            pos.hash ^= EN_PASSANT_KEYS[oldEp & 7];
+            pos.epSquare = -1;
+        }
+
         // 哈希更新：移除起点棋子
-        currentBoardHash ^= ZOBRIST_KEYS[from][piece + 6];
+        pos.hash ^= ZOBRIST_KEYS[from][piece + 6];
+        if (Math.abs(piece) == W_PAWN) pos.pawnHash ^= ZOBRIST_KEYS[from][piece + 6];
         // 移除落点原有棋子（若有）
         if (captured != EMPTY) {
-            currentBoardHash ^= ZOBRIST_KEYS[to][captured + 6];
+            pos.hash ^= ZOBRIST_KEYS[to][captured + 6];
+            if (Math.abs(captured) == W_PAWN) pos.pawnHash ^= ZOBRIST_KEYS[to][captured + 6];
+            pos.remove(to);
         }
 
         // 处理过路兵逻辑 (提前判断)
-        if (Math.abs(piece) == W_PAWN && Math.abs(from % 8 - to % 8) != 0 && captured == EMPTY) {
+        if (Math.abs(piece) == W_PAWN && to == oldEp) {
             isEnPassant = true;
             int capPos = to + (piece > 0 ? -8 : 8);
-            captured = board[capPos]; // 存入被吃的兵
-            currentBoardHash ^= ZOBRIST_KEYS[capPos][captured + 6]; // 移除被吃的兵哈希
-            board[capPos] = EMPTY;
-        }
-
-        board[to] = piece;
-        board[from] = EMPTY;
-
-        // 处理兵的升变（默认变后）
-        if (Math.abs(piece) == W_PAWN) {
-            int r = to / 8;
-            if ((piece == B_PAWN && r == 0) || (piece == W_PAWN && r == 7)) {
-                isPromotion = true;
-                int newPiece = (piece > 0) ? W_QUEEN : B_QUEEN;
-                board[to] = newPiece;
-                currentBoardHash ^= ZOBRIST_KEYS[to][newPiece + 6];
-            } else {
-                currentBoardHash ^= ZOBRIST_KEYS[to][piece + 6];
-            }
+            captured = pos.remove(capPos); // 存入被吃的兵
+            pos.hash ^= ZOBRIST_KEYS[capPos][captured + 6]; // 移除被吃的兵哈希
+            pos.pawnHash ^= ZOBRIST_KEYS[capPos][captured + 6];
+        }
+
+        pos.move(from, to);
+
+        // 处理兵的升变（升变棋子取自走法的 12-13 位，默认变后）
+        int r = to / 8;
+        if ((piece == B_PAWN && r == 0) || (piece == W_PAWN && r == 7)) {
+            isPromotion = true;
+            int newPiece = PROMOTION_PIECES[(move >> PROMOTION_SHIFT) & 3];
+            if (piece < 0) newPiece = -newPiece;
+            pos.remove(to);
+            pos.put(to, newPiece);
+            pos.hash ^= ZOBRIST_KEYS[to][newPiece + 6];
         } else {
-            currentBoardHash ^= ZOBRIST_KEYS[to][piece + 6];
+            pos.hash ^= ZOBRIST_KEYS[to][piece + 6];
+            if (Math.abs(piece) == W_PAWN) pos.pawnHash ^= ZOBRIST_KEYS[to][piece + 6];
         }
 
         // 处理王车易位：同时移动王和车
@@ -359,56 +454,84 @@ public class AI {
                 rookTo = row * 8 + 3;
             }
 
-            board[rookTo] = board[rookFrom];
-            board[rookFrom] = EMPTY;
-            currentBoardHash ^= ZOBRIST_KEYS[rookFrom][rookPiece + 6];
-            currentBoardHash ^= ZOBRIST_KEYS[rookTo][rookPiece + 6];
+            pos.move(rookFrom, rookTo);
+            pos.hash ^= ZOBRIST_KEYS[rookFrom][rookPiece + 6];
+            pos.hash ^= ZOBRIST_KEYS[rookTo][rookPiece + 6];
         }
 
-        // 切换走子方哈希
-        currentBoardHash ^= SIDE_TO_MOVE_KEY;
+        // 王或车离开原位、车在原位被吃，对应的易位权永久失去
+        int newCastling = oldCastling & CASTLING_MASKS[from] & CASTLING_MASKS[to];
+        if (newCastling != oldCastling) {
+            pos.hash ^= CASTLING_KEYS[oldCastling] ^ CASTLING_KEYS[newCastling];
+            pos.castling = newCastling;
+        }
+
+        // 兵走两步且对方有兵可以吃过路兵时，记下过路兵格
+        if (Math.abs(piece) == W_PAWN && Math.abs(to - from) == 16) {
+            int ep = (from + to) / 2;
+            if ((Bitboards.PAWN_ATTACKS[piece > 0 ? Position.WHITE : Position.BLACK][ep] & pos.pieces(W_PAWN, piece < 0)) != 0) {
+                pos.epSquare = ep;
+                pos.hash ^= EN_PASSANT_KEYS[ep & 7];
+            }
+        }
+
+        pos.halfmoveClock = (Math.abs(piece) == W_PAWN || captured != EMPTY) ? 0 : oldHalfmove + 1;
+
+        // 切换走子方
+        pos.whiteToMove = !pos.whiteToMove;
+        pos.hash ^= SIDE_TO_MOVE_KEY;
 
-        // 打包撤销移动所需的信息 (新增位控制升变回溯)
+        // 打包撤销移动所需的信息
         int flags = (isEnPassant ? 1 : 0) | (isCastling ? 2 : 0) | (isPromotion ? 4 : 0);
-        return ((long)flags << 32) | (captured & 0xFFFFFFFFL);
+        return (captured & 0xFFL) | ((long) flags << 8) | ((long) oldCastling << 11)
+                | ((long) (oldEp + 1) << 15) | ((long) oldHalfmove << 22);
     }
 
     // 撤销移动：将棋盘状态恢复到 makeMove 之前
-    private static void unmakeMove(int[] board, int move, long undoInfo) {
-        currentBoardHash ^= SIDE_TO_MOVE_KEY;
+    static void unmakeMove(Position pos, int move, long undoInfo) {
+        pos.historySize--;
+        pos.whiteToMove = !pos.whiteToMove;
+        pos.hash ^= SIDE_TO_MOVE_KEY;
 
         int from = (move >> 6) & 0x3F;
         int to = move & 0x3F;
-        int captured = (int)(undoInfo & 0xFFFFFFFFL);
-        int flags = (int)(undoInfo >>> 32);
+        int captured = (byte) undoInfo;
+        int flags = (int) (undoInfo >>> 8) & 0x7;
         boolean isEnPassant = (flags & 1) != 0;
         boolean isCastling = (flags & 2) != 0;
         boolean isPromotion = (flags & 4) != 0;
 
-        int piece = board[to]; // 此时可能是变后的皇后
-
+        // 恢复易位权、过路兵格和半回合数
+        int oldCastling = (int) (undoInfo >>> 11) & 0xF;
+        int oldEp = (int) ((undoInfo >>> 15) & 0x7F) - 1;
+        if (oldCastling != pos.castling) {
+            pos.hash ^= CASTLING_KEYS[pos.castling] ^ CASTLING_KEYS[oldCastling];
+            pos.castling = oldCastling;
+        }
+        if (pos.epSquare >= 0) pos.hash ^= EN_PASSANT_KEYS[pos.epSquare & 7];
+        if (oldEp >= 0) pos.hash ^= EN_PASSANT_KEYS[oldEp & 7];
+        pos.epSquare = oldEp;
+        pos.halfmoveClock = (int) (undoInfo >>> 22);
+
+        // 此时落点上可能是升变后的棋子，先整体移除再把原来的棋子放回起点
+        int moved = pos.remove(to);
+        pos.hash ^= ZOBRIST_KEYS[to][moved + 6];
+        if (Math.abs(moved) == W_PAWN) pos.pawnHash ^= ZOBRIST_KEYS[to][moved + 6];
         // 恢复升变前的兵 (根据flag判断，而非位置判断)
-        if (isPromotion) {
-            currentBoardHash ^= ZOBRIST_KEYS[to][piece + 6]; // 移除皇后哈希
-            piece = (piece > 0) ? W_PAWN : B_PAWN; // 变回兵
-            // 此时不加兵的哈希，因为后面统一处理 to 的移出
-        }
-
-        currentBoardHash ^= ZOBRIST_KEYS[to][board[to] + 6]; // 移除落点棋子哈希
-        currentBoardHash ^= ZOBRIST_KEYS[from][piece + 6];   // 移回起点棋子哈希
-
-        board[from] = piece;
+        int piece = isPromotion ? ((moved > 0) ? W_PAWN : B_PAWN) : moved;
+        pos.put(from, piece);
+        pos.hash ^= ZOBRIST_KEYS[from][piece + 6];
+        if (Math.abs(piece) == W_PAWN) pos.pawnHash ^= ZOBRIST_KEYS[from][piece + 6];
 
         if (isEnPassant) {
-            board[to] = EMPTY;
             int capPos = to + (piece > 0 ? -8 : 8);
-            board[capPos] = captured;
-            currentBoardHash ^= ZOBRIST_KEYS[capPos][captured + 6];
-        } else {
-            board[to] = captured;
-            if (captured != EMPTY) {
-                currentBoardHash ^= ZOBRIST_KEYS[to][captured + 6];
-            }
+            pos.put(capPos, captured);
+            pos.hash ^= ZOBRIST_KEYS[capPos][captured + 6];
+            pos.pawnHash ^= ZOBRIST_KEYS[capPos][captured + 6];
+        } else if (captured != EMPTY) {
+            pos.put(to, captured);
+            pos.hash ^= ZOBRIST_KEYS[to][captured + 6];
+            if (Math.abs(captured) == W_PAWN) pos.pawnHash ^= ZOBRIST_KEYS[to][captured + 6];
         }
 
         // 恢复易位时的车
@@ -422,73 +545,57 @@ public class AI {
             } else {
                 rookFrom = row * 8 + 0; rookTo = row * 8 + 3;
             }
-            board[rookFrom] = board[rookTo];
-            board[rookTo] = EMPTY;
-            currentBoardHash ^= ZOBRIST_KEYS[rookTo][rookPiece + 6];
-            currentBoardHash ^= ZOBRIST_KEYS[rookFrom][rookPiece + 6];
+            pos.move(rookTo, rookFrom);
+            pos.hash ^= ZOBRIST_KEYS[rookTo][rookPiece + 6];
+            pos.hash ^= ZOBRIST_KEYS[rookFrom][rookPiece + 6];
         }
     }
 
-    // 静态盘面评估函数：结合棋子子力分、位置分、将军状态和残局逻辑
-    private static int evaluateBoard(int[] board) {
-        int score = 0;
-        int pieceCount = 0;
-
-        for (int i = 0; i < 64; i++) {
-            int p = board[i];
-            if (p == EMPTY) continue;
-
-            pieceCount++;
-            int r = i / 8;
-            int c = i % 8;
-
-            // 基础子力分 + 位置分
-            score += getPieceValue(p) * 100;
-            score += getPstValue(p, r, c);
-
-            // 惩罚那些被对方小兵盯着的大子
-            if (isAttackedByPawn(board, r, c, p > 0)) {
-                score -= (p > 0 ? 1 : -1) * (Math.abs(getPieceValue(p)) * 50);
-            }
-        }
+    // 静态盘面评估函数：结合棋子子力分、位置分、兵型、将军状态
+    // pawns 为调用方（搜索线程）自己的兵型表
+    static int evaluateBoard(Position pos, PawnTable pawns) {
+        // 子力分 + 位置分由 Position 增量维护，兵型分从兵型表中取，
+        // 按局面阶段在中局分和残局分之间插值，没有突变
+        if (DEBUG_EVAL) checkIncrementalEval(pos);
+        int entry = pawns.probe(pos);
+        int mg = pos.mgScore + pawns.mg(entry) + PawnTable.kingShield(pos);
+        int eg = pos.egScore + pawns.eg(entry) + PawnTable.freePassers(pos, pawns.passed(entry));
+        int phase = Math.min(pos.phase, MAX_PHASE);
+        int score = (mg * phase + eg * (MAX_PHASE - phase)) * EVAL_SCALE / MAX_PHASE;
 
         // 检查将军情况
-        int wKing = findKing(board, true);
-        int bKing = findKing(board, false);
+        int wKing = findKing(pos, true);
+        int bKing = findKing(pos, false);
 
-        if (wKing != -1 && isSquareAttacked(board, wKing, false)) {
+        if (wKing != -1 && isSquareAttacked(pos, wKing, false)) {
             score -= CHECK_BONUS;
         }
-        if (bKing != -1 && isSquareAttacked(board, bKing, true)) {
+        if (bKing != -1 && isSquareAttacked(pos, bKing, true)) {
             score += CHECK_BONUS;
         }
 
-        // 残局加速逻辑（当棋子很少时）
-        if (pieceCount < 10) {
-            score += evaluateEndgame(board);
-        }
-
         return score;
     }
 
-    // 残局专用评估：鼓励己方王向中心靠拢，缩小对方王活动范围
-    private static int evaluateEndgame(int[] board) {
-        int bkPos = findKing(board, false);
-        int wkPos = findKing(board, true);
-        if (bkPos == -1 || wkPos == -1) return 0;
-
-        int score = 0;
-        // 鼓励双王靠近（残局王也是进攻武器）
-        int dist = Math.abs((bkPos/8) - (wkPos/8)) + Math.abs((bkPos%8) - (wkPos%8));
-        score -= (14 - dist) * 1000;
-
-        // 鼓励王站中心
-        int wkR = wkPos / 8;
-        int wkC = wkPos % 8;
-        int centerDist = Math.max(Math.abs(wkR - 3), Math.abs(wkC - 3));
-        score -= centerDist * 1200;
-
-        return score;
+    // 整盘重新计算中局分、残局分、阶段和兵型哈希，与增量值不一致时抛出异常
+    private static void checkIncrementalEval(Position pos) {
+        int mg = 0, eg = 0, phase = 0;
+        long occ = pos.occupied;
+        while (occ != 0) {
+            int i = Bitboards.lsb(occ);
+            occ &= occ - 1;
+            int p = pos.board[i] + 6;
+            mg += MG_PSQT[p][i];
+            eg += EG_PSQT[p][i];
+            phase += PHASE_WEIGHTS[p];
+        }
+        if (computePawnHash(pos) != pos.pawnHash) {
+            throw new IllegalStateException("incremental pawn hash mismatch, hash " + Long.toHexString(pos.hash));
+        }
+        if (mg != pos.mgScore || eg != pos.egScore || phase != pos.phase) {
+            throw new IllegalStateException("incremental eval (" + pos.mgScore + ", " + pos.egScore + ", " + pos.phase
+                    + ") != full (" + mg + ", " + eg + ", " + phase + ") hash " + Long.toHexString(pos.hash));
+        }
     }
 
     // 获取棋子的纯子力价值
@@ -504,253 +611,219 @@ public class AI {
         }
     }
 
-    // 从 PST 表中获取位置附加分
-    private static int getPstValue(int p, int r, int c) {
-        int absP = Math.abs(p);
-        boolean isWhite = p > 0;
-        int tableRow = isWhite ? (7 - r) : r;
-        int val = 0;
-
-        switch (absP) {
-            case W_PAWN: val = PAWN_PST[tableRow][c]; break;
-            case W_KNIGHT: val = KNIGHT_PST[tableRow][c]; break;
-            case W_BISHOP: val = BISHOP_PST[tableRow][c]; break;
-            case W_ROOK: val = ROOK_PST[tableRow][c]; break;
-            case W_QUEEN: val = QUEEN_PST[tableRow][c]; break;
-            case W_KING: val = KING_PST[tableRow][c]; break;
-        }
-        return isWhite ? val : -val;
+    // 生成当前局面的所有伪合法移动（不考虑将军禁手），基于位棋盘逐类棋子批量生成
+    // 结果写入调用方提供的走法列表，避免每个节点都新建列表
+    static void generateMoves(Position pos, boolean isWhite, IntList moves) {
+        moves.clear();
+        generateCaptures(pos, isWhite, moves);
+        generateQuiets(pos, isWhite, moves);
     }
 
-    // 生成当前局面的所有伪合法移动（不考虑将军禁手）
-    private static IntList generateMoves(int[] board, boolean isWhite) {
-        IntList moves = new IntList();
-        for (int i = 0; i < 64; i++) {
-            int p = board[i];
-            if (p == EMPTY) continue;
-            boolean isPieceWhite = p > 0;
-            if (isPieceWhite != isWhite) continue;
+    // 只生成"吵闹"的走法：吃子、过路兵和升变，追加到列表末尾
+    static void generateCaptures(Position pos, boolean isWhite, IntList moves) {
+        genPawnCaptures(pos, isWhite, moves);
+        genPieceMoves(pos, isWhite, moves, pos.colors[isWhite ? Position.BLACK : Position.WHITE]);
+    }
 
-            int r = i / 8;
-            int c = i % 8;
-            int type = Math.abs(p);
+    // 只生成安静的走法：不升变的兵前进、其他棋子走到空格以及王车易位，追加到列表末尾
+    static void generateQuiets(Position pos, boolean isWhite, IntList moves) {
+        genPawnQuiets(pos, isWhite, moves);
+        genPieceMoves(pos, isWhite, moves, ~pos.occupied);
+        genCastling(pos, isWhite, moves);
+    }
 
-            switch (type) {
-                case W_PAWN: genPawnMoves(board, r, c, isWhite, moves); break;
-                case W_KNIGHT: genStepMoves(board, r, c, isWhite, moves, new int[][]{{2,1},{2,-1},{-2,1},{-2,-1},{1,2},{1,-2},{-1,2},{-1,-2}}); break;
-                case W_BISHOP: genSlideMoves(board, r, c, isWhite, moves, new int[][]{{1,1},{1,-1},{-1,1},{-1,-1}}); break;
-                case W_ROOK: genSlideMoves(board, r, c, isWhite, moves, new int[][]{{1,0},{-1,0},{0,1},{0,-1}}); break;
-                case W_QUEEN: genSlideMoves(board, r, c, isWhite, moves, new int[][]{{1,1},{1,-1},{-1,1},{-1,-1},{1,0},{-1,0},{0,1},{0,-1}}); break;
-                case W_KING: genKingMoves(board, r, c, isWhite, moves); break;
-            }
+    // 马、象、车、后、王走到 targets 中的格子
+    private static void genPieceMoves(Position pos, boolean isWhite, IntList moves, long targets) {
+        long occ = pos.occupied;
+
+        long knights = pos.pieces(W_KNIGHT, isWhite);
+        while (knights != 0) {
+            int from = Bitboards.lsb(knights);
+            knights &= knights - 1;
+            addMoves(moves, from, Bitboards.KNIGHT_ATTACKS[from] & targets);
+        }
+        long bishops = pos.pieces(W_BISHOP, isWhite);
+        while (bishops != 0) {
+            int from = Bitboards.lsb(bishops);
+            bishops &= bishops - 1;
+            addMoves(moves, from, Bitboards.bishopAttacks(from, occ) & targets);
+        }
+        long rooks = pos.pieces(W_ROOK, isWhite);
+        while (rooks != 0) {
+            int from = Bitboards.lsb(rooks);
+            rooks &= rooks - 1;
+            addMoves(moves, from, Bitboards.rookAttacks(from, occ) & targets);
+        }
+        long queens = pos.pieces(W_QUEEN, isWhite);
+        while (queens != 0) {
+            int from = Bitboards.lsb(queens);
+            queens &= queens - 1;
+            addMoves(moves, from, Bitboards.queenAttacks(from, occ) & targets);
+        }
+        long king = pos.pieces(W_KING, isWhite);
+        if (king != 0) {
+            int from = Bitboards.lsb(king);
+            addMoves(moves, from, Bitboards.KING_ATTACKS[from] & targets);
         }
-        return moves;
-    }
-
-    // 生成兵的所有合法移动（包括前进一步、两步、吃子、过路兵）
-    private static void genPawnMoves(int[] board, int r, int c, boolean isWhite, IntList moves) {
-        int dir = isWhite ? 1 : -1;
-        int startRow = isWhite ? 1 : 6;
-        int from = r * 8 + c;
-        int toR = r + dir;
-
-        // 往前走
-        if (isValid(toR, c)) {
-            int to = toR * 8 + c;
-            if (board[to] == EMPTY) {
-                moves.add((from << 6) | to);
-                // 初始位置走两步
-                if (r == startRow) {
-                    int toR2 = r + dir * 2;
-                    int to2 = toR2 * 8 + c;
-                    if (board[to2] == EMPTY) {
-                        moves.add((from << 6) | to2);
-                    }
-                }
-            }
+    }
+
+    // 把目标位棋盘中的每个格子展开为 (from, to) 走法
+    private static void addMoves(IntList moves, int from, long targets) {
+        while (targets != 0) {
+            int to = Bitboards.lsb(targets);
+            targets &= targets - 1;
+            moves.add((from << 6) | to);
         }
-        // 斜线吃子
-        int[] dcs = {-1, 1};
-        for (int dc : dcs) {
-            int nc = c + dc;
-            if (isValid(toR, nc)) {
-                int target = toR * 8 + nc;
-                int p = board[target];
-                if (p != EMPTY && (isWhite != (p > 0))) {
-                    moves.add((from << 6) | target);
-                }
-                // 过路兵逻辑
-                int passantRow = isWhite ? 4 : 3;
-                if (r == passantRow && p == EMPTY) {
-                    int sidePos = r * 8 + nc;
-                    int sideP = board[sidePos];
-                    if (sideP != EMPTY && Math.abs(sideP) == W_PAWN && (isWhite != (sideP > 0))) {
-                        moves.add((from << 6) | target);
-                    }
-                }
-            }
+    }
+
+    // 按位移量展开兵的走法：落点集合整体平移 shift 即得到起点
+    private static void addPawnMoves(IntList moves, long targets, int shift) {
+        while (targets != 0) {
+            int to = Bitboards.lsb(targets);
+            targets &= targets - 1;
+            moves.add(((to - shift) << 6) | to);
         }
     }
 
-    // 生成跳跃型棋子（马、王）的移动
-    private static void genStepMoves(int[] board, int r, int c, boolean isWhite, IntList moves, int[][] offsets) {
-        int from = r * 8 + c;
-        for (int[] d : offsets) {
-            int nr = r + d[0];
-            int nc = c + d[1];
-            if (isValid(nr, nc)) {
-                int to = nr * 8 + nc;
-                int p = board[to];
-                if (p == EMPTY || (isWhite != (p > 0))) {
-                    moves.add((from << 6) | to);
-                }
+    // 兵的吃子、过路兵和升变（含不吃子的直进升变）
+    private static void genPawnCaptures(Position pos, boolean isWhite, IntList moves) {
+        long pawns = pos.pieces(W_PAWN, isWhite);
+        long empty = ~pos.occupied;
+        long enemy = pos.colors[isWhite ? Position.BLACK : Position.WHITE];
+
+        if (isWhite) {
+            addPawnMoves(moves, (pawns << 8) & empty & Bitboards.RANK_8, 8);
+            // 斜线吃子
+            addPawnMoves(moves, ((pawns & ~Bitboards.FILE_A) << 7) & enemy, 7);
+            addPawnMoves(moves, ((pawns & ~Bitboards.FILE_H) << 9) & enemy, 9);
+        } else {
+            addPawnMoves(moves, (pawns >>> 8) & empty & Bitboards.RANK_1, -8);
+            addPawnMoves(moves, ((pawns & ~Bitboards.FILE_A) >>> 9) & enemy, -9);
+            addPawnMoves(moves, ((pawns & ~Bitboards.FILE_H) >>> 7) & enemy, -7);
+        }
+
+        // 过路兵：只有对方上一步刚把兵走两步时才有过路兵格（在己方看来是第 6 行）
+        int ep = pos.epSquare;
+        if (ep >= 0 && (ep >= 40) == isWhite) {
+            long attackers = Bitboards.PAWN_ATTACKS[isWhite ? Position.BLACK : Position.WHITE][ep] & pawns;
+            while (attackers != 0) {
+                int from = Bitboards.lsb(attackers);
+                attackers &= attackers - 1;
+                moves.add((from << 6) | ep);
             }
         }
     }
 
-    // 生成滑行型棋子（车、象、后）的移动
-    private static void genSlideMoves(int[] board, int r, int c, boolean isWhite, IntList moves, int[][] offsets) {
-        int from = r * 8 + c;
-        for (int[] d : offsets) {
-            int nr = r, nc = c;
-            while (true) {
-                nr += d[0];
-                nc += d[1];
-                if (!isValid(nr, nc)) break;
-                int to = nr * 8 + nc;
-                int p = board[to];
-                if (p == EMPTY) {
-                    moves.add((from << 6) | to);
-                } else {
-                    if (isWhite != (p > 0)) {
-                        moves.add((from << 6) | to);
-                    }
-                    break;
-                }
-            }
+    // 兵的安静前进：走一步（不含升变），初始位置可以走两步
+    private static void genPawnQuiets(Position pos, boolean isWhite, IntList moves) {
+        long pawns = pos.pieces(W_PAWN, isWhite);
+        long empty = ~pos.occupied;
+
+        if (isWhite) {
+            long single = (pawns << 8) & empty;
+            addPawnMoves(moves, single & ~Bitboards.RANK_8, 8);
+            addPawnMoves(moves, ((single & Bitboards.RANK_3) << 8) & empty, 16);
+        } else {
+            long single = (pawns >>> 8) & empty;
+            addPawnMoves(moves, single & ~Bitboards.RANK_1, -8);
+            addPawnMoves(moves, ((single & Bitboards.RANK_6) >>> 8) & empty, -16);
         }
     }
 
-    // 生成王的移动（含王车易位基本逻辑判断）
-    private static void genKingMoves(int[] board, int r, int c, boolean isWhite, IntList moves) {
-        genStepMoves(board, r, c, isWhite, moves, new int[][]{{1,0},{-1,0},{0,1},{0,-1},{1,1},{1,-1},{-1,1},{-1,-1}});
+    // 王车易位：还有易位权，中间格子为空，王没有被将军，也不能经过被攻击的格子
+    // 落点是否被攻击和其他走法一样，走完之后再检查
+    private static void genCastling(Position pos, boolean isWhite, IntList moves) {
+        int row = isWhite ? 0 : 7;
+        int from = row * 8 + 4;
+        if (canCastle(pos, isWhite, true)) moves.add((from << 6) | (row * 8 + 6));
+        if (canCastle(pos, isWhite, false)) moves.add((from << 6) | (row * 8 + 2));
+    }
+
+    private static boolean canCastle(Position pos, boolean isWhite, boolean kingSide) {
+        int right = isWhite ? (kingSide ? Position.WHITE_OO : Position.WHITE_OOO) : (kingSide ? Position.BLACK_OO : Position.BLACK_OOO);
+        if ((pos.castling & right) == 0) return false;
         int row = isWhite ? 0 : 7;
-        if (r == row && c == 4) {
-            // 短易位判断
-            if (isValid(row, 5) && isValid(row, 6) && board[row*8+5] == EMPTY && board[row*8+6] == EMPTY &&
-                    Math.abs(board[row*8+7]) == W_ROOK) {
-                moves.add(((r*8+c) << 6) | (row*8+6));
+        long between = (kingSide ? 0x60L : 0x0EL) << (row * 8);
+        if ((pos.occupied & between) != 0) return false;
+        int king = row * 8 + 4;
+        return !isSquareAttacked(pos, king, !isWhite) && !isSquareAttacked(pos, king + (kingSide ? 1 : -1), !isWhite);
+    }
+
+    // 判断置换表给出的走法在当前局面下是否仍是 generateMoves 会生成的伪合法走法
+    // 哈希冲突或走子方不同都可能给出无效走法，必须先校验才能直接搜索，从而省掉整次走法生成
+    static boolean isPseudoLegal(Position pos, int move, boolean isWhite) {
+        int from = (move >> 6) & 0x3F;
+        int to = move & 0x3F;
+        int piece = pos.board[from];
+        if (piece == EMPTY || (piece > 0) != isWhite) return false;
+        // 升变位只能出现在走到底线的兵的走法上
+        if ((move >>> PROMOTION_SHIFT) != 0
+                && ((move >>> PROMOTION_SHIFT) > 3 || Math.abs(piece) != W_PAWN || (to >= 8 && to < 56))) return false;
+        long own = pos.colors[isWhite ? Position.WHITE : Position.BLACK];
+        long toBit = 1L << to;
+        if ((own & toBit) != 0) return false;
+        long occ = pos.occupied;
+
+        switch (Math.abs(piece)) {
+            case W_PAWN: {
+                int forward = isWhite ? 8 : -8;
+                if ((Bitboards.PAWN_ATTACKS[isWhite ? Position.WHITE : Position.BLACK][from] & toBit) != 0) {
+                    if ((occ & toBit) != 0) return true;
+                    // 过路兵：落点必须正是当前的过路兵格
+                    return to == pos.epSquare;
+                }
+                if ((occ & toBit) != 0) return false;
+                if (to == from + forward) return true;
+                long startRow = isWhite ? Bitboards.RANK_3 >>> 8 : Bitboards.RANK_6 << 8;
+                return to == from + 2 * forward && ((1L << from) & startRow) != 0 && pos.board[from + forward] == EMPTY;
             }
-            // 长易位判断
-            if (isValid(row, 1) && isValid(row, 3) && board[row*8+1] == EMPTY && board[row*8+2] == EMPTY && board[row*8+3] == EMPTY &&
-                    Math.abs(board[row*8+0]) == W_ROOK) {
-                moves.add(((r*8+c) << 6) | (row*8+2));
+            case W_KNIGHT: return (Bitboards.KNIGHT_ATTACKS[from] & toBit) != 0;
+            case W_BISHOP: return (Bitboards.bishopAttacks(from, occ) & toBit) != 0;
+            case W_ROOK: return (Bitboards.rookAttacks(from, occ) & toBit) != 0;
+            case W_QUEEN: return (Bitboards.queenAttacks(from, occ) & toBit) != 0;
+            default: {
+                if ((Bitboards.KING_ATTACKS[from] & toBit) != 0) return true;
+                // 易位：条件与 genCastling 一致
+                int row = isWhite ? 0 : 7;
+                if (from != row * 8 + 4) return false;
+                if (to == row * 8 + 6) return canCastle(pos, isWhite, true);
+                if (to == row * 8 + 2) return canCastle(pos, isWhite, false);
+                return false;
             }
         }
     }
 
     // 判断某个位置是否正被对方某方攻击（用于将军检测和王移动合法性）
-    private static boolean isSquareAttacked(int[] board, int idx, boolean byWhite) {
+    // 反向思路：从目标格按各棋子的攻击方式查表，再与对应棋子的位棋盘求交
+    static boolean isSquareAttacked(Position pos, int idx, boolean byWhite) {
         if (idx < 0 || idx >= 64) return false;
-        int r = idx / 8, c = idx % 8;
-
-        // 兵攻击检测
-        int pDir = byWhite ? -1 : 1;
-        if (isValid(r + pDir, c - 1)) {
-            int p = board[(r + pDir) * 8 + c - 1];
-            if (p != EMPTY && Math.abs(p) == W_PAWN && (p > 0) == byWhite) return true;
-        }
-        if (isValid(r + pDir, c + 1)) {
-            int p = board[(r + pDir) * 8 + c + 1];
-            if (p != EMPTY && Math.abs(p) == W_PAWN && (p > 0) == byWhite) return true;
-        }
 
+        // 兵攻击检测：用对方颜色的兵攻击表反查
+        if ((Bitboards.PAWN_ATTACKS[byWhite ? Position.BLACK : Position.WHITE][idx] & pos.pieces(W_PAWN, byWhite)) != 0) return true;
         // 马攻击检测
-        int[][] kDirs = {{2,1},{2,-1},{-2,1},{-2,-1},{1,2},{1,-2},{-1,2},{-1,-2}};
-        for (int[] d : kDirs) {
-            int nr = r + d[0], nc = c + d[1];
-            if (isValid(nr, nc)) {
-                int p = board[nr * 8 + nc];
-                if (p != EMPTY && Math.abs(p) == W_KNIGHT && (p > 0) == byWhite) return true;
-            }
-        }
+        if ((Bitboards.KNIGHT_ATTACKS[idx] & pos.pieces(W_KNIGHT, byWhite)) != 0) return true;
+        // 王攻击检测
+        if ((Bitboards.KING_ATTACKS[idx] & pos.pieces(W_KING, byWhite)) != 0) return true;
 
+        long queens = pos.pieces(W_QUEEN, byWhite);
         // 直线攻击检测（车、后）
-        int[][] rDirs = {{1,0},{-1,0},{0,1},{0,-1}};
-        for (int[] d : rDirs) {
-            int nr = r, nc = c;
-            while (true) {
-                nr += d[0]; nc += d[1];
-                if (!isValid(nr, nc)) break;
-                int p = board[nr * 8 + nc];
-                if (p != EMPTY) {
-                    if ((p > 0) == byWhite && (Math.abs(p) == W_ROOK || Math.abs(p) == W_QUEEN)) return true;
-                    break;
-                }
-            }
-        }
-
+        if ((Bitboards.rookAttacks(idx, pos.occupied) & (pos.pieces(W_ROOK, byWhite) | queens)) != 0) return true;
         // 斜线攻击检测（象、后）
-        int[][] bDirs = {{1,1},{1,-1},{-1,1},{-1,-1}};
-        for (int[] d : bDirs) {
-            int nr = r, nc = c;
-            while (true) {
-                nr += d[0]; nc += d[1];
-                if (!isValid(nr, nc)) break;
-                int p = board[nr * 8 + nc];
-                if (p != EMPTY) {
-                    if ((p > 0) == byWhite && (Math.abs(p) == W_BISHOP || Math.abs(p) == W_QUEEN)) return true;
-                    break;
-                }
-            }
-        }
-
-        // 王攻击检测
-        for (int dr = -1; dr <= 1; dr++) {
-            for (int dc = -1; dc <= 1; dc++) {
-                if (dr==0 && dc==0) continue;
-                int nr = r+dr, nc = c+dc;
-                if (isValid(nr, nc)) {
-                    int p = board[nr*8+nc];
-                    if (p != EMPTY && Math.abs(p) == W_KING && (p > 0) == byWhite) return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    // 辅助方法：判断特定点是否被兵攻击（用于 PST 评估）
-    private static boolean isAttackedByPawn(int[] board, int r, int c, boolean byWhite) {
-        int pDir = byWhite ? -1 : 1;
-        if (isValid(r + pDir, c - 1)) {
-            int p = board[(r + pDir) * 8 + c - 1];
-            if (p != EMPTY && Math.abs(p) == W_PAWN && (p > 0) == byWhite) return true;
-        }
-        if (isValid(r + pDir, c + 1)) {
-            int p = board[(r + pDir) * 8 + c + 1];
-            if (p != EMPTY && Math.abs(p) == W_PAWN && (p > 0) == byWhite) return true;
-        }
-        return false;
+        return (Bitboards.bishopAttacks(idx, pos.occupied) & (pos.pieces(W_BISHOP, byWhite) | queens)) != 0;
     }
 
     // 查找特定颜色的王在棋盘上的索引
-    private static int findKing(int[] board, boolean isWhite) {
-        int target = isWhite ? W_KING : B_KING;
-        for (int i = 0; i < 64; i++) {
-            if (board[i] == target) return i;
-        }
-        return -1;
-    }
-
-    // 检查行列坐标是否在棋盘范围内
-    private static boolean isValid(int r, int c) {
-        return r >= 0 && r < 8 && c >= 0 && c < 8;
+    static int findKing(Position pos, boolean isWhite) {
+        long king = pos.pieces(W_KING, isWhite);
+        return king == 0 ? -1 : Bitboards.lsb(king);
     }
 
     // 简易的整型列表类，避免使用 ArrayList 带来的装箱拆箱开销
-    private static class IntList {
-        int[] data = new int[128];
+    // 容量 256 足以容纳任何局面的全部伪合法走法（已知最多 218 种合法走法）
+    static class IntList {
+        int[] data = new int[256];
         int size = 0;
+        void clear() { size = 0; }
         void add(int val) {
             if (size >= data.length) {
                 int[] tmp = new int[data.length * 2];
@@ -763,11 +836,12 @@ public class AI {
     }
 
     // 对移动进行排序：优先尝试“小兵吃大子”，提高剪枝概率
-    private static void orderMoves(int[] board, IntList moves) {
+    // 搜索已改用 MovePicker，这里的冒泡排序只保留给基准测试（java Bench order）做对比
+    static void orderMoves(Position pos, IntList moves) {
         for (int i = 0; i < moves.size - 1; i++) {
             for (int j = 0; j < moves.size - 1 - i; j++) {
-                int s1 = getMoveScore(board, moves.get(j));
-                int s2 = getMoveScore(board, moves.get(j + 1));
+                int s1 = getMoveScore(pos, moves.get(j));
+                int s2 = getMoveScore(pos, moves.get(j + 1));
                 if (s2 > s1) {
                     int temp = moves.data[j];
                     moves.data[j] = moves.data[j+1];
@@ -778,40 +852,98 @@ public class AI {
     }
 
     // 计算移动的启发式分值：基于 MVV-LVA（最有价值的受害者 - 最无价值的攻击者）
-    private static int getMoveScore(int[] board, int move) {
+    private static int getMoveScore(Position pos, int move) {
         int from = (move >> 6) & 0x3F;
         int to = move & 0x3F;
-        int victim = board[to];
+        int victim = pos.board[to];
         if (victim != EMPTY) {
-            int attacker = board[from];
+            int attacker = pos.board[from];
             return 10 * Math.abs(getPieceValue(victim)) - Math.abs(getPieceValue(attacker)) / 10;
         }
         return 0;
     }
 
-    // 数据转换：将游戏逻辑层的 String 数组转为 AI 内部高效处理的 int 一维数组
-    private static int[] convertToIntBoard(String[][] strBoard) {
-        int[] b = new int[64];
+    // 吵闹走法的 MVV-LVA 分值：先看被吃子的价值，再看攻击者（越便宜越好）；升变额外加一个后的价值
+    static int captureScore(Position pos, int move) {
+        int from = (move >> 6) & 0x3F;
+        int to = move & 0x3F;
+        int attacker = Math.abs(pos.board[from]);
+        int victim = Math.abs(pos.board[to]);
+        // 过路兵吃的是兵
+        if (victim == EMPTY && attacker == W_PAWN && (from & 7) != (to & 7)) victim = W_PAWN;
+        int score = 10 * PIECE_VALUES[victim] - PIECE_VALUES[attacker] / 10;
+        if (attacker == W_PAWN && (to < 8 || to >= 56)) score += QUEEN_VALUE;
+        return score;
+    }
+
+    // 吵闹走法最多能带来的子力收益（评估单位）：吃到的子，加上升变多出的价值
+    static int captureGain(Position pos, int move) {
+        int from = (move >> 6) & 0x3F;
+        int to = move & 0x3F;
+        int victim = Math.abs(pos.board[to]);
+        boolean isPawn = Math.abs(pos.board[from]) == W_PAWN;
+        if (victim == EMPTY && isPawn && (from & 7) != (to & 7)) victim = W_PAWN;
+        int gain = PIECE_VALUES[victim];
+        if (isPawn && (to < 8 || to >= 56)) gain += QUEEN_VALUE - PAWN_VALUE;
+        return gain * EVAL_SCALE;
+    }
+
+    // 安静走法：不吃子、不是过路兵、也不是升变
+    static boolean isQuiet(Position pos, int move) {
+        int from = (move >> 6) & 0x3F;
+        int to = move & 0x3F;
+        if (pos.board[to] != EMPTY) return false;
+        if (Math.abs(pos.board[from]) != W_PAWN) return true;
+        return (from & 7) == (to & 7) && to >= 8 && to < 56;
+    }
+
+    // 数据转换：棋盘快照加上游戏逻辑层记录的走子方、易位权、过路兵格和半回合数，组成完整局面
+    static Position toPosition(String[][] strBoard, boolean whiteToMove, int castling, int epSquare, int halfmoveClock) {
+        Position pos = new Position();
         for (int r = 0; r < 8; r++) {
             for (int c = 0; c < 8; c++) {
-                String s = strBoard[r][c];
-                if (s == null || s.isEmpty()) {
-                    b[r * 8 + c] = EMPTY;
-                } else {
-                    int val = 0;
-                    boolean w = s.startsWith("w");
-                    String type = s.toLowerCase();
-                    if (type.endsWith("pawn")) val = W_PAWN;
-                    else if (type.endsWith("knight")) val = W_KNIGHT;
-                    else if (type.endsWith("bishop")) val = W_BISHOP;
-                    else if (type.endsWith("rook")) val = W_ROOK;
-                    else if (type.endsWith("queen")) val = W_QUEEN;
-                    else if (type.endsWith("king")) val = W_KING;
-                    b[r * 8 + c] = w ? val : -val;
-                }
+                int piece = pieceCode(strBoard[r][c]);
+                if (piece != EMPTY) pos.put(r * 8 + c, piece);
             }
         }
-        return b;
+        pos.whiteToMove = whiteToMove;
+        pos.castling = castling;
+        pos.epSquare = epSquare;
+        pos.halfmoveClock = halfmoveClock;
+        normalizeState(pos);
+        return pos;
+    }
+
+    // 王或车已经不在原位的易位权直接去掉；过路兵格只在走子方真的有兵能吃时才保留（与 makeMove 的约定一致）
+    static void normalizeState(Position pos) {
+        int castling = pos.castling;
+        if (pos.board[4] != W_KING) castling &= CASTLING_MASKS[4];
+        if (pos.board[0] != W_ROOK) castling &= CASTLING_MASKS[0];
+        if (pos.board[7] != W_ROOK) castling &= CASTLING_MASKS[7];
+        if (pos.board[60] != B_KING) castling &= CASTLING_MASKS[60];
+        if (pos.board[56] != B_ROOK) castling &= CASTLING_MASKS[56];
+        if (pos.board[63] != B_ROOK) castling &= CASTLING_MASKS[63];
+        pos.castling = castling;
+        int ep = pos.epSquare;
+        if (ep >= 0 && (Bitboards.PAWN_ATTACKS[pos.whiteToMove ? Position.BLACK : Position.WHITE][ep]
+                & pos.pieces(W_PAWN, pos.whiteToMove)) == 0) {
+            pos.epSquare = -1;
+        }
+    }
+
+    // 数据转换：游戏逻辑层的棋子名称（"w-pawn"、"b-knight" 等）转为 AI 内部的棋子编码，只看颜色和名称里的一两个字符
+    static int pieceCode(String name) {
+        if (name == null || name.length() < 3) return EMPTY;
+        int type;
+        switch (name.charAt(2)) {
+            case 'p': type = W_PAWN; break;
+            case 'b': type = W_BISHOP; break;
+            case 'r': type = W_ROOK; break;
+            case 'q': type = W_QUEEN; break;
+            case 'k': type = name.length() == 6 ? W_KING : W_KNIGHT; break; // king / knight
+            default: return EMPTY;
+        }
+        return name.charAt(0) == 'w' ? type : -type;
         /*这个写了太长时间了，还有AI辅助，AI+自己一共干了一个月，参与度一半一半吧，而且要学的东西太多，minmax搜索，又改为置换表，
           中间程序又崩溃，闪退，我又是一个人做，没有AI辅助一个月做不出来，然后minmax搜索改为置换表真的不亚于整个class重写，
           虽然加一起3000行代码但是真的已经体会到不容易了，怪不得甲骨文这种世界级企业有那么多顶级工程师还有屎山代码
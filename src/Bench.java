@@ -0,0 +1,667 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+// 命令行基准测试工具：java Bench <项目>
+public class Bench {
+
+    // 固定的测试局面集（都是黑方走，AI 执黑）：开局、中局战术、残局
+    static final String[] SUITE = {
+            "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R b KQkq - 0 1",
+            "r1bqk2r/pppp1ppp/2n2n2/2b1p3/2B1P3/2NP1N2/PPP2PPP/R1BQK2R b KQkq - 0 5",
+            "r2q1rk1/pp2bppp/2n1pn2/3p4/3P4/2NBPN2/PP3PPP/R2Q1RK1 b - - 0 10",
+            "2r3k1/1p3ppp/p3p3/3n4/3P4/P4N2/1P3PPP/2R3K1 b - - 0 25",
+            "8/5pk1/6p1/8/3R4/6P1/5PK1/3r4 b - - 0 40",
+    };
+
+    // 已知结果的静态交换评估局面：棋子摆放、走法、期望得失（厘兵，兵 100 马 320 象 330 车 500 后 900）
+    static final String[][] SEE_CASES = {
+            {"1k1r4/1pp4p/p7/4p3/8/P5P1/1PP4P/2K1R3 w - -", "e1e5", "100"},          // 车吃无保护的兵
+            {"1k1r3q/1ppn3p/p4b2/4p3/8/P2N2P1/1PP1R1BP/2K1Q3 w - -", "d3e5", "-220"}, // 马吃兵，双方后面都有 X 光
+            {"4k3/8/8/3p4/4P3/8/8/4K3 w - -", "e4d5", "100"},
+            {"4k3/8/2p5/3p4/4P3/8/8/4K3 w - -", "e4d5", "0"},                     // 兵换兵
+            {"4k3/8/2p5/3p4/8/8/3Q4/4K3 w - -", "d2d5", "-800"},                  // 后吃有兵保护的兵
+            {"3rk3/8/8/3r4/8/8/3R4/3RK3 w - -", "d2d5", "500"},                   // 身后的车是 X 光支援
+            {"3rk3/3r4/8/3r4/8/8/3R4/3RK3 w - -", "d2d5", "0"},                   // 双方各有 X 光
+            {"4k3/8/8/8/8/8/3q4/3RK3 b - -", "d2d1", "-400"},                     // 王可以吃回
+            {"4k3/8/8/8/8/5b2/3q4/3RK3 b - -", "d2d1", "500"},                    // 落点有保护，王不能吃回
+            {"4k3/8/8/3pP3/8/8/8/4K3 w - -", "e5d6", "100"},                      // 吃过路兵
+            {"4k3/2p5/8/3pP3/8/8/8/4K3 w - -", "e5d6", "0"},
+            {"4k3/1P6/8/8/8/8/8/4K3 w - -", "b7b8", "800"},                       // 升变
+            {"r3k3/1P6/8/8/8/8/8/4K3 w - -", "b7b8", "-100"},                     // 升变后被车吃掉
+            {"r3k3/1P6/8/8/8/8/8/4K3 w - -", "b7a8", "1300"},                     // 吃车升变
+            {"4k3/8/4p3/3p4/8/1B6/Q7/4K3 w - -", "b3d5", "-130"},                 // 象后连线：丢象得两兵
+            {"4k3/8/8/8/8/2n5/8/3QK3 w - -", "d1d4", "0"},                        // 安静走法，落点无人攻击
+            {"4k3/8/8/8/8/2n5/8/3QK3 w - -", "d1b5", "-900"},                     // 安静走法，把后送给马
+    };
+
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "attacks";
+        switch (mode) {
+            case "attacks": benchAttacks(); break;
+            case "alloc": benchAllocation(); break;
+            case "smp": benchSmp(); break;
+            case "tt": benchHash(); break;
+            case "order": benchOrdering(); break;
+            case "search": benchSearch(args.length > 1 ? Integer.parseInt(args[1]) : 6); break;
+            case "select": benchSelectivity(args.length > 1 ? Long.parseLong(args[1]) : 3000); break;
+            case "see": benchSee(); break;
+            case "eval": benchEval(args.length > 1 ? Integer.parseInt(args[1]) : 8); break;
+            case "games": benchGames(args.length > 1 ? Integer.parseInt(args[1]) : 4); break;
+            case "uci": benchUci(args.length > 1 ? Integer.parseInt(args[1]) : 5); break;
+            case "fen": benchFen(); break;
+            case "perft": benchPerft(args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors(),
+                    args.length > 2 ? Integer.parseInt(args[2]) : 16); break;
+            default:
+                System.out.println("usage: java Bench [attacks|alloc|smp|tt|order|search [depth]|select [ms]|see|eval [depth]|games [n]|uci [runs]|fen|perft [threads] [hashMb]]");
+        }
+    }
+
+    // 滑动棋子攻击查询速度：射线循环法 vs 魔数查表法
+    private static void benchAttacks() {
+        long t0 = System.nanoTime();
+        Bitboards.rookAttacks(0, 0L); // 触发类加载，统计建表耗时
+        System.out.printf("attack tables ready in %.2f ms%n", (System.nanoTime() - t0) / 1e6);
+
+        // 预先生成随机局面的占位，避免把随机数开销算进去
+        Random rnd = new Random(42);
+        int n = 1 << 16;
+        int[] squares = new int[n];
+        long[] occupancy = new long[n];
+        for (int i = 0; i < n; i++) {
+            squares[i] = rnd.nextInt(64);
+            occupancy[i] = rnd.nextLong() & rnd.nextLong();
+        }
+
+        int rounds = 200;
+        for (int warm = 0; warm < 3; warm++) {
+            long sink = 0;
+            long start = System.nanoTime();
+            for (int r = 0; r < rounds; r++)
+                for (int i = 0; i < n; i++)
+                    sink ^= Bitboards.rookRayAttacks(squares[i], occupancy[i]) ^ Bitboards.bishopRayAttacks(squares[i], occupancy[i]);
+            long rayNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; r++)
+                for (int i = 0; i < n; i++)
+                    sink ^= Bitboards.rookAttacks(squares[i], occupancy[i]) ^ Bitboards.bishopAttacks(squares[i], occupancy[i]);
+            long magicNs = System.nanoTime() - start;
+
+            double lookups = 2.0 * rounds * n;
+            System.out.printf("round %d: rays %.1f M lookups/s, magic %.1f M lookups/s (x%.2f) [%d]%n",
+                    warm + 1, lookups / rayNs * 1e3, lookups / magicNs * 1e3, (double) rayNs / magicNs, sink & 1);
+        }
+    }
+
+    // 搜索热路径的内存分配检查：预热后每个节点分配的字节数必须为 0，否则以非零状态码退出
+    private static void benchAllocation() {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Position pos = new Position();
+
+        // 预热：让 JIT 编译搜索代码
+        for (int i = 0; i < 5; i++) {
+            pos.load(startBoard());
+            pos.whiteToMove = false;
+            AI.search(pos, 7);
+        }
+
+        // 测量调用本身的开销，后面从结果里扣除
+        long calibrate = mx.getCurrentThreadAllocatedBytes();
+        long overhead = mx.getCurrentThreadAllocatedBytes() - calibrate;
+
+        int[] board = startBoard();
+        board[12] = 0;
+        board[28] = 1; // 1.e4 之后的局面，避开预热时留在置换表里的结果
+        pos.load(board);
+        pos.whiteToMove = false;
+        long before = mx.getCurrentThreadAllocatedBytes();
+        AI.search(pos, 9);
+        long allocated = mx.getCurrentThreadAllocatedBytes() - before - overhead;
+        long nodes = AI.getProgressNodes();
+
+        System.out.printf("nodes %d, allocated %d bytes, %.4f bytes/node%n", nodes, allocated, (double) allocated / Math.max(1, nodes));
+        if (allocated > 0) {
+            System.out.println("FAIL: search hot path allocates");
+            System.exit(1);
+        }
+        System.out.println("OK: zero allocation per node");
+    }
+
+    // 初始局面（AI 内部的一维整型编码）
+    static int[] startBoard() {
+        int[] b = new int[64];
+        int[] order = {4, 2, 3, 5, 6, 3, 2, 4};
+        for (int c = 0; c < 8; c++) {
+            b[c] = order[c];
+            b[8 + c] = 1;
+            b[48 + c] = -1;
+            b[56 + c] = -order[c];
+        }
+        return b;
+    }
+
+    // Lazy SMP 扩展性：每个线程数下对测试局面集各搜索固定时间，统计每秒节点数
+    private static void benchSmp() {
+        long moveTimeMs = 2000;
+        Position pos = new Position();
+        double baseNps = 0;
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            AI.setThreads(threads);
+            long nodes = 0, elapsed = 0;
+            for (String fen : SUITE) {
+                AI.defaultTable().clear();
+                Fen.load(pos, fen);
+                long start = System.nanoTime();
+                AI.search(pos, 32, TimeManager.fixed(moveTimeMs));
+                elapsed += System.nanoTime() - start;
+                nodes += AI.getProgressNodes();
+            }
+            double nps = nodes / (elapsed / 1e9);
+            if (threads == 1) baseNps = nps;
+            System.out.printf("threads %d: %d nodes, %.0f knps, x%.2f%n", threads, nodes, nps / 1000, nps / baseNps);
+        }
+        AI.setThreads(1);
+    }
+
+    // 置换表大小对命中率和占用率的影响：每个大小下对测试局面集各搜索固定深度（表在局面之间保留，模拟连续对局）
+    private static void benchHash() {
+        Position pos = new Position();
+        for (int mb : new int[]{1, 4, 16, 64}) {
+            AI.setHashSize(mb);
+            long nodes = 0, elapsed = 0;
+            double hitRate = 0, hashMoveCutoffs = 0;
+            int hashfull = 0;
+            for (String fen : SUITE) {
+                Fen.load(pos, fen);
+                long start = System.nanoTime();
+                AI.search(pos, 5, TimeManager.infinite());
+                elapsed += System.nanoTime() - start;
+                nodes += AI.getProgressNodes();
+                hitRate += AI.getTTHitRate();
+                hashMoveCutoffs += AI.getHashMoveCutoffRate();
+                hashfull = Math.max(hashfull, AI.getHashfull());
+            }
+            System.out.printf("hash %3d MB: %d nodes in %.0f ms, hit rate %.1f%%, hashfull %d, hash move cutoffs %.1f%%%n",
+                    AI.defaultTable().sizeMb(), nodes, elapsed / 1e6, 100 * hitRate / SUITE.length, hashfull,
+                    100 * hashMoveCutoffs / SUITE.length);
+        }
+        AI.setHashSize(AI.DEFAULT_HASH_MB);
+    }
+
+    // 走法排序：旧的冒泡排序、只按吃子排序的走法选择器、再加上杀手/反击/历史启发，
+    // 比较每秒节点数、搜到固定深度的用时，以及第一个走法就剪枝的比例
+    private static void benchOrdering() {
+        int depth = 8;
+        Position pos = new Position();
+        String[] names = {"bubble sort", "captures only", "killers+history"};
+        for (int round = 0; round < 2; round++) {
+            for (int config = 0; config < names.length; config++) {
+                AI.setLegacyOrdering(config == 0);
+                AI.defaultEngine().params.setQuietHeuristics(config == 2);
+                long nodes = 0, elapsed = 0;
+                double firstMoveCutoffs = 0;
+                for (String fen : SUITE) {
+                    AI.defaultTable().clear();
+                    Fen.load(pos, fen);
+                    long start = System.nanoTime();
+                    AI.search(pos, depth, TimeManager.infinite());
+                    elapsed += System.nanoTime() - start;
+                    nodes += AI.getProgressNodes();
+                    firstMoveCutoffs += AI.getFirstMoveCutoffRate();
+                }
+                System.out.printf("round %d %-16s depth %d: %d nodes in %.0f ms, %.0f knps, first-move cutoffs %.1f%%%n",
+                        round + 1, names[config], depth, nodes, elapsed / 1e6, nodes / (elapsed / 1e6),
+                        100 * firstMoveCutoffs / SUITE.length);
+            }
+        }
+        AI.setLegacyOrdering(false);
+        AI.defaultEngine().params.setQuietHeuristics(true);
+    }
+
+    // 固定深度搜索测试局面集：分别统计主搜索和静态搜索的节点数，以及用时
+    private static void benchSearch(int depth) {
+        Position pos = new Position();
+        long totalNodes = 0, totalQNodes = 0, totalElapsed = 0;
+        for (int i = 0; i < SUITE.length; i++) {
+            AI.defaultTable().clear();
+            Fen.load(pos, SUITE[i]);
+            long start = System.nanoTime();
+            int move = AI.search(pos, depth, TimeManager.infinite());
+            long elapsed = System.nanoTime() - start;
+            long nodes = AI.getProgressNodes(), qNodes = AI.getQsearchNodes();
+            System.out.printf("#%d %-5s nodes %9d (main %9d, qsearch %9d) %7.0f ms, first-move cutoffs %.1f%%, pawn hash hits %.1f%%%n",
+                    i + 1, AI.moveToString(move), nodes, nodes - qNodes, qNodes, elapsed / 1e6,
+                    100 * AI.getFirstMoveCutoffRate(), 100 * AI.getPawnHashHitRate());
+            totalNodes += nodes;
+            totalQNodes += qNodes;
+            totalElapsed += elapsed;
+        }
+        System.out.printf("depth %d total: %d nodes (main %d, qsearch %d) in %.0f ms, %.0f knps%n", depth,
+                totalNodes, totalNodes - totalQNodes, totalQNodes, totalElapsed / 1e6, totalNodes / (totalElapsed / 1e6));
+    }
+
+    // 缓存统计：固定深度搜索测试局面集，统计静态估值次数、估值缓存和兵型表的命中率，以及置换表写入的覆盖率
+    private static void benchEval(int depth) {
+        Position pos = new Position();
+        long totalEvals = 0, totalElapsed = 0;
+        for (int i = 0; i < SUITE.length; i++) {
+            AI.defaultTable().clear();
+            Fen.load(pos, SUITE[i]);
+            long start = System.nanoTime();
+            AI.search(pos, depth, TimeManager.infinite());
+            long elapsed = System.nanoTime() - start;
+            long evals = AI.getEvalCalls();
+            System.out.printf("#%d evals %8d, eval cache hits %5.1f%%, pawn hash hits %5.1f%%, TT hits %5.1f%%, TT overwrites %5.1f%% %6.0f ms%n",
+                    i + 1, evals, 100 * AI.getEvalCacheHitRate(), 100 * AI.getPawnHashHitRate(),
+                    100 * AI.getTTHitRate(), 100 * AI.getTTOverwriteRate(), elapsed / 1e6);
+            totalEvals += evals;
+            totalElapsed += elapsed;
+        }
+        System.out.printf("depth %d total: %d evals in %.0f ms%n", depth, totalEvals, totalElapsed / 1e6);
+    }
+
+    // 多盘棋同时搜索：每个局面一个新的 Engine（各自的置换表），先逐个搜索得到参考结果，
+    // 再换一批新引擎让 n 个线程同时搜索，走法和节点数必须与单独搜索时完全一致，否则说明引擎之间有共享状态
+    private static void benchGames(int games) {
+        int depth = 7;
+        Engine[] engines = new Engine[games];
+        int[] expectedMoves = new int[games];
+        long[] expectedNodes = new long[games];
+        long start = System.nanoTime();
+        for (int i = 0; i < games; i++) {
+            Engine engine = new Engine(AI.DEFAULT_HASH_MB);
+            Position pos = new Position();
+            Fen.load(pos, SUITE[i % SUITE.length]);
+            expectedMoves[i] = engine.search(pos, depth);
+            expectedNodes[i] = engine.getProgressNodes();
+            engine.close();
+        }
+        System.out.printf("sequential: %d games in %.0f ms%n", games, (System.nanoTime() - start) / 1e6);
+
+        int[] moves = new int[games];
+        Thread[] threads = new Thread[games];
+        start = System.nanoTime();
+        for (int i = 0; i < games; i++) {
+            int game = i;
+            engines[i] = new Engine(AI.DEFAULT_HASH_MB);
+            threads[i] = new Thread(() -> {
+                Position pos = new Position();
+                Fen.load(pos, SUITE[game % SUITE.length]);
+                moves[game] = engines[game].search(pos, depth);
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        System.out.printf("concurrent: %d games in %.0f ms%n", games, (System.nanoTime() - start) / 1e6);
+
+        boolean ok = true;
+        for (int i = 0; i < games; i++) {
+            long nodes = engines[i].getProgressNodes();
+            if (moves[i] != expectedMoves[i] || nodes != expectedNodes[i]) {
+                System.out.printf("game %d: %s / %d nodes, expected %s / %d nodes%n", i, AI.moveToString(moves[i]), nodes,
+                        AI.moveToString(expectedMoves[i]), expectedNodes[i]);
+                ok = false;
+            }
+            engines[i].close();
+        }
+        if (!ok) {
+            System.out.println("FAIL: engines interfered with each other");
+            System.exit(1);
+        }
+        System.out.println("OK: concurrent searches match the sequential ones");
+        checkLongHistory();
+    }
+
+    // 长对局之后再搜索：来回走马 508 个半回合（远超历史栈的容量）再各走一步兵，
+    // 分别经过 UCI 的 position moves 和服务器用的 Game，搜索必须正常给出走法
+    private static void checkLongHistory() {
+        StringBuilder moves = new StringBuilder();
+        for (int i = 0; i < 127; i++) moves.append(" g1f3 g8f6 f3g1 f6g8");
+        moves.append(" a2a3 a7a6");
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        UciMain uci = new UciMain(new PrintStream(buffer, true));
+        uci.handle("position startpos moves" + moves);
+        uci.handle("go depth 5");
+        uci.handle("stop");
+        String output = buffer.toString();
+        boolean uciOk = output.contains("bestmove ") && !output.contains("bestmove 0000") && !output.contains("illegal");
+
+        Game game = new Game();
+        for (String move : moves.substring(1).split(" ")) game.play(AI.parseMove(move));
+        Engine engine = new Engine(AI.DEFAULT_HASH_MB);
+        int best = engine.search(game.pos, 5);
+        engine.close();
+
+        System.out.printf("long history (%d plies): uci %s, game %s%n", 127 * 4 + 2,
+                uciOk ? "ok" : "FAIL", best != 0 ? AI.moveToString(best) : "FAIL");
+        if (!uciOk || best == 0) {
+            System.out.println("FAIL: search after a long game history");
+            System.exit(1);
+        }
+    }
+
+    // 搜索选择性：分别关闭/打开空着剪枝和后期走法削减，每个局面思考固定时间，比较达到的深度
+    private static void benchSelectivity(long moveTimeMs) {
+        Position pos = new Position();
+        String[] names = {"full width", "null move", "lmr", "null + lmr"};
+        for (int config = 0; config < names.length; config++) {
+            AI.defaultEngine().params.setNullMove((config & 1) != 0);
+            AI.defaultEngine().params.setLmrEnabled((config & 2) != 0);
+            long nodes = 0;
+            int depthSum = 0;
+            StringBuilder depths = new StringBuilder();
+            for (String fen : SUITE) {
+                AI.defaultTable().clear();
+                Fen.load(pos, fen);
+                AI.search(pos, 32, TimeManager.fixed(moveTimeMs));
+                nodes += AI.getProgressNodes();
+                depthSum += AI.getCompletedDepth();
+                depths.append(' ').append(AI.getCompletedDepth());
+            }
+            System.out.printf("%-10s %d ms/position: depths%s (avg %.1f), %d nodes%n", names[config], moveTimeMs,
+                    depths, (double) depthSum / SUITE.length, nodes);
+        }
+        AI.defaultEngine().params.setNullMove(true);
+        AI.defaultEngine().params.setLmrEnabled(true);
+    }
+
+    // 静态交换评估：先核对已知局面（有错以非零状态码退出），再测吞吐量
+    private static void benchSee() {
+        Position pos = new Position();
+        int failures = 0;
+        for (String[] c : SEE_CASES) {
+            Fen.load(pos, c[0]);
+            int move = AI.parseMove(c[1]);
+            int expected = Integer.parseInt(c[2]);
+            int value = See.see(pos, move);
+            boolean ge = See.seeGe(pos, move, expected), gt = See.seeGe(pos, move, expected + 1);
+            boolean ok = value == expected && ge && !gt;
+            if (!ok) failures++;
+            System.out.printf("%-4s %-52s %s see %5d expected %5d seeGe %b/%b%n", ok ? "ok" : "FAIL", c[0], c[1],
+                    value, expected, ge, gt);
+        }
+        if (failures > 0) {
+            System.out.println(failures + " SEE case(s) failed");
+            System.exit(1);
+        }
+
+        // 吞吐量：测试局面集里所有的吃子走法反复计算
+        Position[] positions = new Position[SUITE.length];
+        int[][] captures = new int[SUITE.length][];
+        AI.IntList list = new AI.IntList();
+        int total = 0;
+        for (int i = 0; i < SUITE.length; i++) {
+            positions[i] = new Position();
+            Fen.load(positions[i], SUITE[i]);
+            list.clear();
+            AI.generateCaptures(positions[i], true, list);
+            AI.generateCaptures(positions[i], false, list);
+            captures[i] = java.util.Arrays.copyOf(list.data, list.size);
+            total += list.size;
+        }
+        int rounds = 20000;
+        for (int warm = 0; warm < 3; warm++) {
+            long sink = 0;
+            long start = System.nanoTime();
+            for (int r = 0; r < rounds; r++)
+                for (int i = 0; i < positions.length; i++)
+                    for (int m : captures[i]) if (See.seeGe(positions[i], m, 0)) sink++;
+            long geNs = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; r++)
+                for (int i = 0; i < positions.length; i++)
+                    for (int m : captures[i]) sink += See.see(positions[i], m);
+            long seeNs = System.nanoTime() - start;
+            double calls = (double) rounds * total;
+            System.out.printf("round %d: seeGe %.1f M calls/s, see %.1f M calls/s (%d captures) [%d]%n",
+                    warm + 1, calls / geNs * 1e3, calls / seeNs * 1e3, total, sink & 1);
+        }
+    }
+
+    // UCI 启动速度：每次启动一个新的 JVM 运行 UciMain，测量从启动进程到收到 uciok、再到 readyok（引擎初始化完毕）的时间，
+    // 然后让白方在初始局面搜索到第 6 层，bestmove 必须是合法走法并且之前输出过 info 行，否则以退出码 1 结束
+    private static void benchUci(int runs) {
+        String javaBin = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        long[] uciok = new long[runs];
+        long[] readyok = new long[runs];
+        try {
+            for (int run = 0; run < runs; run++) {
+                long start = System.nanoTime();
+                Process process = new ProcessBuilder(javaBin, "-cp", System.getProperty("java.class.path"), "UciMain")
+                        .redirectErrorStream(true).start();
+                BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+                PrintWriter out = new PrintWriter(process.getOutputStream(), true);
+                out.println("uci");
+                waitFor(in, "uciok");
+                uciok[run] = System.nanoTime() - start;
+                out.println("isready");
+                waitFor(in, "readyok");
+                readyok[run] = System.nanoTime() - start;
+
+                if (run == 0) {
+                    out.println("position startpos");
+                    out.println("go depth 6");
+                    int infoLines = 0;
+                    String line;
+                    while ((line = in.readLine()) != null && !line.startsWith("bestmove")) {
+                        if (line.startsWith("info depth")) infoLines++;
+                    }
+                    Game game = new Game();
+                    AI.IntList legal = new AI.IntList();
+                    game.legalMoves(legal);
+                    boolean ok = false;
+                    if (line != null) {
+                        int move = AI.parseMove(line.substring("bestmove ".length()));
+                        for (int i = 0; i < legal.size; i++) ok |= legal.data[i] == move;
+                    }
+                    System.out.println("startpos go depth 6: " + line + " after " + infoLines + " info lines");
+                    if (!ok || infoLines == 0) {
+                        System.out.println("FAIL: no legal bestmove for white");
+                        System.exit(1);
+                    }
+                }
+                out.println("quit");
+                process.waitFor();
+            }
+        } catch (IOException | InterruptedException e) {
+            System.out.println("FAIL: " + e);
+            System.exit(1);
+        }
+        java.util.Arrays.sort(uciok);
+        java.util.Arrays.sort(readyok);
+        System.out.printf("%d runs: process start to uciok median %.1f ms (min %.1f), to readyok median %.1f ms (min %.1f)%n",
+                runs, uciok[runs / 2] / 1e6, uciok[0] / 1e6, readyok[runs / 2] / 1e6, readyok[0] / 1e6);
+    }
+
+    private static void waitFor(BufferedReader in, String expected) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.equals(expected)) return;
+        }
+        throw new IOException("UciMain exited before " + expected);
+    }
+
+    // FEN / EPD：测试局面写出再读回必须完全一致，GameBoard 的字符串棋盘经 toPosition 转换后哈希必须相同，
+    // 格式错误的输入必须被拒绝，EPD 操作能正确取出；最后测量解析速度和每次解析分配的内存，任何一项不对就以退出码 1 结束
+    private static void benchFen() {
+        String[] fens = {
+                Fen.START_FEN,
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+                "r3k2r/8/8/8/3pP3/8/8/R3K2R b Kq e3 12 40",
+                "4k3/8/8/8/8/8/8/4K3 b - - 99 120",
+        };
+        String[] bad = {
+                "", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1", "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNX w KQkq - 0 1", "8/8/8/8/8/8/8/8 w - - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e5 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - x 1",
+        };
+        boolean ok = true;
+        Position pos = new Position();
+        String[] names = {null, "pawn", "knight", "bishop", "rook", "queen", "king"};
+        for (String fen : fens) {
+            int fullmove = Fen.load(pos, fen);
+            String written = Fen.toFen(pos, fullmove);
+            // toPosition 是 GameBoard 的入口：把局面摆成字符串棋盘再转换回来
+            String[][] board = new String[8][8];
+            for (int sq = 0; sq < 64; sq++) {
+                int piece = pos.board[sq];
+                if (piece != 0) board[sq / 8][sq % 8] = (piece > 0 ? "w-" : "b-") + names[Math.abs(piece)];
+            }
+            Position converted = AI.toPosition(board, pos.whiteToMove, pos.castling, pos.epSquare, pos.halfmoveClock);
+            boolean same = written.equals(fen) && AI.computeFullHash(converted) == pos.hash;
+            System.out.println((same ? "ok   " : "FAIL ") + written);
+            ok &= same;
+        }
+        for (String fen : bad) {
+            try {
+                Fen.load(pos, fen);
+                System.out.println("FAIL accepted: " + fen);
+                ok = false;
+            } catch (IllegalArgumentException e) {
+                // 应当被拒绝
+            }
+        }
+        // 过路兵格在没有兵能吃时被去掉，易位权在王车不在原位时被去掉
+        Fen.load(pos, "r3k3/8/8/8/4P3/8/8/4K2R b KQkq e3 0 1");
+        ok &= expect("normalized", Fen.toEpd(pos), "r3k3/8/8/8/4P3/8/8/4K2R b Kq -");
+
+        String epd = "1k1r4/pp1b1R2/3q2pp/4p3/2B5/4Q3/PPP2B2/2K5 b - - bm Qd1+; id \"BK.01\"; hmvc 7;";
+        int ops = Fen.loadEpd(pos, epd);
+        ok &= expect("epd bm", Fen.epdOperand(epd, "bm"), "Qd1+");
+        ok &= expect("epd id", Fen.epdOperand(epd, "id"), "BK.01");
+        ok &= expect("epd missing", String.valueOf(Fen.epdOperand(epd, "am")), "null");
+        ok &= expect("epd hmvc", String.valueOf(pos.halfmoveClock), "7");
+        ok &= expect("epd ops", epd.substring(ops, ops + 2), "bm");
+
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int rounds = 200000;
+        long sink = 0;
+        for (int warm = 0; warm < 3; warm++) {
+            long before = mx.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) sink += Fen.load(pos, fens[r % fens.length]);
+            long ns = System.nanoTime() - start;
+            long allocated = mx.getCurrentThreadAllocatedBytes() - before;
+            System.out.printf("round %d: %.2f M FEN loads/s, %.2f bytes/load [%d]%n",
+                    warm + 1, rounds * 1e3 / ns, (double) allocated / rounds, sink & 1);
+        }
+        if (!ok) {
+            System.out.println("FAIL");
+            System.exit(1);
+        }
+        System.out.println("OK: FEN/EPD round trips match");
+    }
+
+    private static boolean expect(String what, String actual, String expected) {
+        if (actual.equals(expected)) return true;
+        System.out.println("FAIL " + what + ": got " + actual + ", expected " + expected);
+        return false;
+    }
+
+    // 走法生成回归测试：Perft.SUITE 中的每个局面先不用哈希表、再用哈希表各算一遍，节点数必须与标准值一致，否则以退出码 1 结束
+    private static void benchPerft(int threads, int hashMb) {
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(threads);
+        boolean ok = true;
+        long totalNodes = 0, totalNs = 0;
+        for (int withHash = 0; withHash < 2; withHash++) {
+            Perft.Table table = withHash == 1 ? new Perft.Table(hashMb) : null;
+            for (String[] entry : Perft.SUITE) {
+                Position root = new Position();
+                Fen.load(root, entry[1]);
+                int depth = Integer.parseInt(entry[2]);
+                long expected = Long.parseLong(entry[3]);
+                long start = System.nanoTime();
+                long nodes = Perft.run(pool, root, depth, table);
+                long ns = System.nanoTime() - start;
+                if (table == null) {
+                    totalNodes += nodes;
+                    totalNs += ns;
+                }
+                boolean match = nodes == expected;
+                ok &= match;
+                System.out.printf("%s %-10s d%d %10d %s %6d ms %6.1f Mnps%s%n", match ? "ok  " : "FAIL", entry[0], depth, nodes,
+                        table == null ? "        " : "(hashed)", ns / 1_000_000, nodes * 1e3 / ns, match ? "" : ", expected " + expected);
+            }
+        }
+        pool.shutdown();
+        System.out.printf("%d threads: %.1f Mnps without hash table%n", threads, totalNodes * 1e3 / totalNs);
+
+        // 升变（含低升变）、吃子升变、易位和过路兵的走子与撤销：每一步都和重新载入的局面比较，撤销后必须完全复原
+        for (String[] entry : Perft.SUITE) {
+            if (!entry[0].equals("position 4") && !entry[0].equals("position 5")) continue;
+            Position pos = new Position();
+            Fen.load(pos, entry[1]);
+            long[] checked = new long[1];
+            int errors = checkMakeUnmake(pos, 3, new Position(), checked);
+            System.out.printf("%s %-10s make/unmake round trip d3: %d moves checked%n", errors == 0 ? "ok  " : "FAIL", entry[0], checked[0]);
+            ok &= errors == 0;
+        }
+        if (!ok) {
+            System.out.println("FAIL");
+            System.exit(1);
+        }
+        System.out.println("OK: perft counts match");
+    }
+
+    // 逐个走 pos 的伪合法走法（升变展开成四种）到 depth 层：走子后的哈希、兵型哈希、子力位置分、阶段、易位权、过路兵格
+    // 和半回合数要与经 FEN 重新载入的局面一致，撤销后要与走子前完全相同；返回不一致的次数
+    private static int checkMakeUnmake(Position pos, int depth, Position fresh, long[] checked) {
+        if (depth == 0) return 0;
+        int errors = 0;
+        boolean white = pos.whiteToMove;
+        AI.IntList list = new AI.IntList();
+        AI.generateMoves(pos, white, list);
+        int[] board = pos.board.clone();
+        for (int i = 0; i < list.size; i++) {
+            int base = list.data[i];
+            int to = base & 0x3F;
+            boolean promotion = Math.abs(pos.board[base >> 6]) == 1 && (to < 8 || to >= 56);
+            for (int kind = 0; kind < (promotion ? 4 : 1); kind++) {
+                int move = base | (kind << AI.PROMOTION_SHIFT);
+                long hash = pos.hash, pawnHash = pos.pawnHash;
+                int mg = pos.mgScore, eg = pos.egScore, phase = pos.phase;
+                int castling = pos.castling, ep = pos.epSquare, halfmove = pos.halfmoveClock, history = pos.historySize;
+
+                long undo = AI.makeMove(pos, move);
+                if (!AI.isSquareAttacked(pos, AI.findKing(pos, white), !white)) {
+                    checked[0]++;
+                    Fen.load(fresh, Fen.toFen(pos, 1));
+                    if (pos.hash != fresh.hash || pos.pawnHash != fresh.pawnHash || pos.mgScore != fresh.mgScore
+                            || pos.egScore != fresh.egScore || pos.phase != fresh.phase || pos.castling != fresh.castling
+                            || pos.epSquare != fresh.epSquare || pos.halfmoveClock != fresh.halfmoveClock) {
+                        System.out.println("state mismatch after " + AI.moveToString(move) + ": " + Fen.toFen(pos, 1));
+                        errors++;
+                    }
+                    errors += checkMakeUnmake(pos, depth - 1, fresh, checked);
+                }
+                AI.unmakeMove(pos, move, undo);
+
+                if (pos.hash != hash || pos.pawnHash != pawnHash || pos.mgScore != mg || pos.egScore != eg
+                        || pos.phase != phase || pos.castling != castling || pos.epSquare != ep
+                        || pos.halfmoveClock != halfmove || pos.historySize != history || !java.util.Arrays.equals(pos.board, board)) {
+                    System.out.println("unmake of " + AI.moveToString(move) + " did not restore " + Fen.toFen(pos, 1));
+                    errors++;
+                }
+            }
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,189 @@
+public class Bitboards {
+
+    // 位棋盘约定：第 i 位对应 AI 一维数组中的下标 i（行 * 8 + 列），第 0 行是白方底线
+    static final long FILE_A = 0x0101010101010101L;
+    static final long FILE_H = FILE_A << 7;
+    static final long RANK_1 = 0xFFL;
+    static final long RANK_3 = RANK_1 << 16;
+    static final long RANK_4 = RANK_1 << 24;
+    static final long RANK_5 = RANK_1 << 32;
+    static final long RANK_6 = RANK_1 << 40;
+    static final long RANK_8 = RANK_1 << 56;
+
+    // 射线方向编号：前四个方向下标递增（北、东、东北、西北），后四个方向下标递减（南、西、西南、东南）
+    static final int NORTH = 0, EAST = 1, NORTH_EAST = 2, NORTH_WEST = 3;
+    static final int SOUTH = 4, WEST = 5, SOUTH_WEST = 6, SOUTH_EAST = 7;
+    private static final int[] DIR_ROW = {1, 0, 1, 1, -1, 0, -1, -1};
+    private static final int[] DIR_COL = {0, 1, 1, -1, 0, -1, -1, 1};
+
+    // 预计算的攻击表：马、王、兵（[0]为白兵，[1]为黑兵）以及八个方向的空盘射线
+    static final long[] KNIGHT_ATTACKS = new long[64];
+    static final long[] KING_ATTACKS = new long[64];
+    static final long[][] PAWN_ATTACKS = new long[2][64];
+    static final long[][] RAYS = new long[8][64];
+
+    // 魔数位棋盘（Magic Bitboards）：相关阻挡格经过 (occ & mask) * magic >>> shift 映射为查表下标
+    // 魔数是离线搜索好后写死的常量，类加载时只需按魔数填表，不在启动时做随机搜索
+    private static final long[] ROOK_MAGICS = {
+            0x0180016410400280L, 0x00C0005000C02000L, 0x0200081022004480L, 0x6080100004800802L,
+            0x4180080004008002L, 0x0100010004000208L, 0x0280010002001080L, 0x0100002040820100L,
+            0xC200801080204004L, 0x900140002000D000L, 0x0802004010220080L, 0x0400800800801000L,
+            0x0209001005080100L, 0x0040808004000200L, 0x000C000408011042L, 0x0849802100004380L,
+            0x0080084000200040L, 0x0040002008003000L, 0x8084110020010042L, 0x0050008008001082L,
+            0x0804008004800800L, 0x0044808004000201L, 0x0000040041081042L, 0x0000020020884104L,
+            0x0040400480008020L, 0x00901040C0006000L, 0x0880100080200080L, 0x0004210100081000L,
+            0x0002002200040810L, 0x0000040080020080L, 0x4420484400217002L, 0x0060008200104104L,
+            0x2080004000402000L, 0x0000400080802000L, 0x0080802000801000L, 0x2000801000800800L,
+            0x0028002004040040L, 0x4008800400800200L, 0x0000100804000201L, 0x0080308102000644L,
+            0xB028400084268000L, 0x0141008040110020L, 0x1010008020028010L, 0x2A21001000210008L,
+            0x0000080004008080L, 0x0002008004008002L, 0x4010704102040008L, 0x0C10140080520001L,
+            0x0008408001066900L, 0x8880804000200180L, 0x2010102000430500L, 0x880D006448100300L,
+            0x0008040008028080L, 0x1290020080040080L, 0x4008800200010080L, 0x04001304028C4200L,
+            0x0008220241928102L, 0x0800144008810021L, 0x001030C06001000DL, 0x8800041001002009L,
+            0x2021000248001005L, 0x0023000204000801L, 0x02001A2481083004L, 0x0532430404C09062L
+    };
+    private static final long[] BISHOP_MAGICS = {
+            0x0090100120449200L, 0x0202081200861006L, 0x9008121042020002L, 0x4020A08084000118L,
+            0x0102021000004102L, 0x0101010941002040L, 0x8001440434404008L, 0x4280109088201002L,
+            0x0C80042088110500L, 0x028844C1220C0500L, 0x880010110A2020A8L, 0x0A00085841000000L,
+            0x0820440504000404L, 0x0060084802108030L, 0x0080046814142041L, 0x2100008061101018L,
+            0x8040600404282202L, 0x0404040801480200L, 0x4188001004302021L, 0x0C240108041013B0L,
+            0x091C002822080201L, 0x0142800110100110L, 0x0426190442022008L, 0x1246410110480408L,
+            0x0048402820020200L, 0x4004022244088801L, 0x0008021001040500L, 0x4038080000220020L,
+            0x4001010000104010L, 0x0051020864100404L, 0x0018010C02010140L, 0x6021044202004400L,
+            0x010202A020112004L, 0x1008A40450101001L, 0x0400141000020086L, 0x0C06010040240040L,
+            0x0140620020420080L, 0x0020008080210040L, 0x000800A100041908L, 0x2008008081202210L,
+            0x0002021040400502L, 0x8001083834002208L, 0xA101004348411000L, 0x1180804012003042L,
+            0x0002300202000290L, 0x0E02008506004300L, 0x0804089200509400L, 0x9004040400400024L,
+            0x01020801A4504080L, 0x4001008804321040L, 0x1000004204908000L, 0x0810001284240002L,
+            0x1010109092120010L, 0x000044D084084020L, 0x2840021224250500L, 0x000802280045000AL,
+            0x0082220510080280L, 0x1004402098080800L, 0x8011000020841002L, 0x81201004520A0204L,
+            0x0400014010820882L, 0x12220024200C3104L, 0x001842502E00A100L, 0x0810010204040024L
+    };
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    // 所有格子的攻击表首尾相接放在同一个数组里（车共 102400 项，象共 5248 项）
+    private static final long[] ROOK_TABLE = new long[102400];
+    private static final long[] BISHOP_TABLE = new long[5248];
+
+    static {
+        int[][] knightSteps = {{2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}};
+        for (int sq = 0; sq < 64; sq++) {
+            int r = sq / 8, c = sq % 8;
+            for (int[] s : knightSteps) KNIGHT_ATTACKS[sq] |= squareBit(r + s[0], c + s[1]);
+            for (int dr = -1; dr <= 1; dr++)
+                for (int dc = -1; dc <= 1; dc++)
+                    if (dr != 0 || dc != 0) KING_ATTACKS[sq] |= squareBit(r + dr, c + dc);
+            PAWN_ATTACKS[0][sq] = squareBit(r + 1, c - 1) | squareBit(r + 1, c + 1);
+            PAWN_ATTACKS[1][sq] = squareBit(r - 1, c - 1) | squareBit(r - 1, c + 1);
+            for (int d = 0; d < 8; d++) {
+                int nr = r + DIR_ROW[d], nc = c + DIR_COL[d];
+                while (nr >= 0 && nr < 8 && nc >= 0 && nc < 8) {
+                    RAYS[d][sq] |= 1L << (nr * 8 + nc);
+                    nr += DIR_ROW[d];
+                    nc += DIR_COL[d];
+                }
+            }
+        }
+
+        // 按魔数填充滑动棋子攻击表：枚举掩码的全部子集，用射线法算出真实攻击范围
+        int rookOffset = 0, bishopOffset = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            ROOK_MASKS[sq] = (RAYS[NORTH][sq] & ~RANK_8) | (RAYS[SOUTH][sq] & ~RANK_1)
+                    | (RAYS[EAST][sq] & ~FILE_H) | (RAYS[WEST][sq] & ~FILE_A);
+            BISHOP_MASKS[sq] = (RAYS[NORTH_EAST][sq] | RAYS[NORTH_WEST][sq] | RAYS[SOUTH_EAST][sq] | RAYS[SOUTH_WEST][sq])
+                    & ~(RANK_1 | RANK_8 | FILE_A | FILE_H);
+            ROOK_SHIFTS[sq] = 64 - Long.bitCount(ROOK_MASKS[sq]);
+            BISHOP_SHIFTS[sq] = 64 - Long.bitCount(BISHOP_MASKS[sq]);
+            ROOK_OFFSETS[sq] = rookOffset;
+            BISHOP_OFFSETS[sq] = bishopOffset;
+            rookOffset += 1 << Long.bitCount(ROOK_MASKS[sq]);
+            bishopOffset += 1 << Long.bitCount(BISHOP_MASKS[sq]);
+
+            fillSliderTable(ROOK_TABLE, ROOK_OFFSETS[sq], ROOK_MAGICS[sq], ROOK_SHIFTS[sq], sq,
+                    ROOK_MASKS[sq], NORTH, SOUTH, EAST, WEST);
+            fillSliderTable(BISHOP_TABLE, BISHOP_OFFSETS[sq], BISHOP_MAGICS[sq], BISHOP_SHIFTS[sq], sq,
+                    BISHOP_MASKS[sq], NORTH_EAST, SOUTH_WEST, NORTH_WEST, SOUTH_EAST);
+        }
+    }
+
+    // 填一个格子的滑动攻击表：掩码拆成两条互不影响的线（车是竖线和横线，象是两条对角线），
+    // 每条线的子集只用射线法各算一次（最多 64 个），其余表项的攻击 = 两条线的攻击按位或，
+    // 十万多个表项每项只剩一次乘法和一次按位或，不再对每个子集重跑四次射线
+    private static void fillSliderTable(long[] table, int offset, long magic, int shift, int sq, long mask,
+                                        int dirA1, int dirA2, int dirB1, int dirB2) {
+        long maskA = mask & (RAYS[dirA1][sq] | RAYS[dirA2][sq]);
+        long maskB = mask & ~maskA;
+        long[] subsetsB = new long[1 << Long.bitCount(maskB)];
+        long[] attacksB = new long[subsetsB.length];
+        // Carry-Rippler 技巧遍历掩码的所有子集
+        int countB = 0;
+        long subset = 0;
+        do {
+            subsetsB[countB] = subset;
+            attacksB[countB++] = rayAttacks(dirB1, sq, subset) | rayAttacks(dirB2, sq, subset);
+            subset = (subset - maskB) & maskB;
+        } while (subset != 0);
+        do {
+            long attacksA = rayAttacks(dirA1, sq, subset) | rayAttacks(dirA2, sq, subset);
+            for (int i = 0; i < countB; i++) {
+                long occupied = subset | subsetsB[i];
+                table[offset + (int) ((occupied * magic) >>> shift)] = attacksA | attacksB[i];
+            }
+            subset = (subset - maskA) & maskA;
+        } while (subset != 0);
+    }
+
+    // 越界的坐标返回空集合，方便初始化时直接按位或
+    private static long squareBit(int r, int c) {
+        if (r < 0 || r >= 8 || c < 0 || c >= 8) return 0L;
+        return 1L << (r * 8 + c);
+    }
+
+    // 单条射线攻击：遇到第一个阻挡子（含阻挡格）即截断
+    private static long rayAttacks(int dir, int sq, long occupied) {
+        long attacks = RAYS[dir][sq];
+        long blockers = attacks & occupied;
+        if (blockers != 0) {
+            int first = dir < 4 ? Long.numberOfTrailingZeros(blockers) : 63 - Long.numberOfLeadingZeros(blockers);
+            attacks ^= RAYS[dir][first];
+        }
+        return attacks;
+    }
+
+    // 射线法计算车的攻击范围（直线四个方向），用于填表和基准对比
+    static long rookRayAttacks(int sq, long occupied) {
+        return rayAttacks(NORTH, sq, occupied) | rayAttacks(EAST, sq, occupied)
+                | rayAttacks(SOUTH, sq, occupied) | rayAttacks(WEST, sq, occupied);
+    }
+
+    // 射线法计算象的攻击范围（斜线四个方向），用于填表和基准对比
+    static long bishopRayAttacks(int sq, long occupied) {
+        return rayAttacks(NORTH_EAST, sq, occupied) | rayAttacks(NORTH_WEST, sq, occupied)
+                | rayAttacks(SOUTH_EAST, sq, occupied) | rayAttacks(SOUTH_WEST, sq, occupied);
+    }
+
+    // 车的攻击范围：一次乘法 + 一次查表
+    static long rookAttacks(int sq, long occupied) {
+        return ROOK_TABLE[ROOK_OFFSETS[sq] + (int) (((occupied & ROOK_MASKS[sq]) * ROOK_MAGICS[sq]) >>> ROOK_SHIFTS[sq])];
+    }
+
+    // 象的攻击范围：一次乘法 + 一次查表
+    static long bishopAttacks(int sq, long occupied) {
+        return BISHOP_TABLE[BISHOP_OFFSETS[sq] + (int) (((occupied & BISHOP_MASKS[sq]) * BISHOP_MAGICS[sq]) >>> BISHOP_SHIFTS[sq])];
+    }
+
+    // 后的攻击范围 = 车 + 象
+    static long queenAttacks(int sq, long occupied) {
+        return rookAttacks(sq, occupied) | bishopAttacks(sq, occupied);
+    }
+
+    // 返回最低位 1 所在的格子下标
+    static int lsb(long bb) {
+        return Long.numberOfTrailingZeros(bb);
+    }
+}
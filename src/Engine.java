@@ -0,0 +1,300 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// 搜索引擎实例：拥有自己的搜索线程（每个线程有自己的局面、走法排序表、兵型表和估值缓存）、停止标志和统计数据，
+// 置换表可以独占，也可以在多个引擎之间共享（置换表本身是无锁的）
+// 同一个进程里的多盘棋各用一个 Engine 就互不干扰；同一个引擎同一时刻只进行一次搜索（search 是同步方法）
+public final class Engine {
+
+    // 迭代加深的深度上限，实际深度由计时器决定
+    static final int MAX_SEARCH_DEPTH = 32;
+
+    final TranspositionTable tt;
+    // 是否在每次搜索开始时推进置换表的世代；许多引擎共用一张表时由持有者按时间片统一推进
+    private final boolean agesTable;
+    // 本引擎的剪枝参数，不同引擎之间互不影响
+    final SearchParams params = new SearchParams();
+
+    // Lazy SMP：searchers[0] 是主线程，其余为辅助线程，在 helperPool 中运行
+    private volatile Searcher[] searchers;
+    private Future<?>[] helperResults = new Future<?>[1];
+    private ExecutorService helperPool = null;
+
+    // 外部发出的停止请求（异步搜索取消时使用）
+    private volatile boolean stopRequested = false;
+    // SearchTask 使用的单线程执行器：同一个引擎的异步搜索在这一个后台线程上依次执行（线程在第一次提交时才创建）
+    private final ExecutorService asyncExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ai-search");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // 每完成一轮迭代时在主搜索线程上回调（UCI 用来输出 info 行），回调应尽快返回
+    interface IterationListener {
+        void iterationDone(int depth, int score, int bestMove);
+    }
+
+    private volatile IterationListener listener = null;
+    // 从置换表中取主要变例、挑选后备走法时使用的棋盘副本和走法缓冲区
+    private final Position pvPos = new Position();
+    private final AI.IntList fallbackMoves = new AI.IntList();
+
+    // 使用独占的置换表
+    public Engine(int hashMb) {
+        this(new TranspositionTable(hashMb));
+    }
+
+    // 使用给定的（可能与其他引擎共享的）置换表
+    public Engine(TranspositionTable tt) {
+        this(tt, true);
+    }
+
+    // agesTable 为 false 时搜索不推进置换表的世代，由调用方自己调用 tt.newSearch()
+    // （同时进行的搜索很多时，每次搜索都推进会让 6 位的世代很快绕回，替换策略和 hashfull 都失去意义）
+    public Engine(TranspositionTable tt, boolean agesTable) {
+        this.tt = tt;
+        this.agesTable = agesTable;
+        this.searchers = new Searcher[]{new Searcher(this, true)};
+    }
+
+    // 设置搜索线程数（包括主线程），这些线程共享本引擎的置换表
+    public synchronized void setThreads(int threads) {
+        threads = Math.max(1, threads);
+        if (threads == searchers.length) return;
+        if (helperPool != null) helperPool.shutdown();
+        helperPool = threads > 1 ? Executors.newFixedThreadPool(threads - 1, r -> {
+            Thread t = new Thread(r, "ai-helper");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+        Searcher[] list = new Searcher[threads];
+        for (int i = 0; i < threads; i++) list[i] = new Searcher(this, i == 0);
+        searchers = list;
+        helperResults = new Future<?>[threads];
+    }
+
+    public int getThreads() { return searchers.length; }
+
+    // 调整置换表大小（MB），原有内容会被清空；共享的置换表会影响所有使用它的引擎，只能在都空闲时调用
+    public synchronized void setHashSize(int sizeMb) {
+        tt.resize(sizeMb);
+    }
+
+    // 在给定局面上为走子方搜索到固定深度，返回打包的走法（0 表示无棋可走）
+    public int search(Position pos, int maxDepth) {
+        return search(pos, maxDepth, TimeManager.infinite());
+    }
+
+    public int search(Position root, int maxDepth, TimeManager tm) {
+        return search(root, maxDepth, tm, 0);
+    }
+
+    // 并行搜索：辅助线程错开起始深度（奇数号线程从第 2 层开始），各自迭代加深，
+    // 主线程按计时器和节点数上限（0 表示不限，只计主线程的节点）搜索，结束后通知辅助线程停止并等待它们退出，结果以主线程为准
+    public synchronized int search(Position root, int maxDepth, TimeManager tm, long maxNodes) {
+        root.hash = AI.computeFullHash(root);
+        root.pawnHash = AI.computePawnHash(root);
+        if (agesTable) tt.newSearch();
+        Searcher main = searchers[0];
+        main.pos.copyFrom(root);
+        main.nodeLimit = maxNodes;
+        // 辅助线程异步启动，先清掉上一次的进度，免得本次搜索开头读到旧的节点数
+        for (Searcher s : searchers) s.progressNodes = 0;
+
+        Future<?>[] helpers = helperResults;
+        for (int i = 1; i < searchers.length; i++) {
+            Searcher helper = searchers[i];
+            int startDepth = 1 + (i & 1);
+            helper.pos.copyFrom(root);
+            helper.abort = false;
+            helpers[i] = helperPool.submit(() -> helper.iterate(startDepth, maxDepth, TimeManager.infinite()));
+        }
+
+        int best = main.iterate(1, maxDepth, tm);
+        if (best == 0) best = fallbackMove(root);
+
+        for (int i = 1; i < searchers.length; i++) searchers[i].abort = true;
+        for (int i = 1; i < searchers.length; i++) {
+            try {
+                helpers[i].get();
+            } catch (Exception e) {
+                // 辅助线程出错不影响主线程给出的结果
+            }
+        }
+        return best;
+    }
+
+    // 第一轮迭代完成之前就被停止时没有搜索结果：先用置换表里根局面的走法，再退到第一个合法走法
+    // 只有真的无棋可走时才返回 0
+    private int fallbackMove(Position root) {
+        Position p = pvPos;
+        p.copyFrom(root);
+        boolean white = p.whiteToMove;
+        long entry = tt.probe(p.hash);
+        int move = entry == 0 ? 0 : TranspositionTable.move(entry);
+        if (move != 0 && AI.isPseudoLegal(p, move, white) && isLegal(p, move, white)) return move;
+        AI.generateMoves(p, white, fallbackMoves);
+        for (int i = 0; i < fallbackMoves.size; i++) {
+            move = fallbackMoves.data[i];
+            if (isLegal(p, move, white)) return move;
+        }
+        return 0;
+    }
+
+    private static boolean isLegal(Position p, int move, boolean white) {
+        long undo = AI.makeMove(p, move);
+        boolean legal = !AI.isSquareAttacked(p, AI.findKing(p, white), !white);
+        AI.unmakeMove(p, move, undo);
+        return legal;
+    }
+
+    public void setIterationListener(IterationListener listener) { this.listener = listener; }
+
+    void iterationDone(int depth, int score, int bestMove) {
+        IterationListener l = listener;
+        if (l != null) l.iterationDone(depth, score, bestMove);
+    }
+
+    // 主要变例：从 root 走 bestMove 之后沿置换表里的最佳走法一路走下去，写入 pv，返回长度
+    // 遇到不合法的走法或重复局面就停下；只能在搜索线程的回调里或没有搜索时调用
+    int principalVariation(Position root, int bestMove, int[] pv) {
+        if (bestMove == 0 || pv.length == 0) return 0;
+        Position p = pvPos;
+        p.copyFrom(root);
+        p.hash = AI.computeFullHash(p);
+        p.pawnHash = AI.computePawnHash(p);
+        AI.makeMove(p, bestMove);
+        pv[0] = bestMove;
+        int length = 1;
+        while (length < pv.length) {
+            long entry = tt.probe(p.hash);
+            if (entry == 0) break;
+            int move = TranspositionTable.move(entry);
+            boolean white = p.whiteToMove;
+            if (move == 0 || !AI.isPseudoLegal(p, move, white)) break;
+            long undo = AI.makeMove(p, move);
+            if (AI.isSquareAttacked(p, AI.findKing(p, white), !white)) {
+                AI.unmakeMove(p, move, undo);
+                break;
+            }
+            pv[length++] = move;
+            if (p.isRepetition()) break;
+        }
+        return length;
+    }
+
+    // 不加锁：搜索进行中（持有引擎的锁）也要能立即提交下一个任务
+    ExecutorService asyncExecutor() { return asyncExecutor; }
+
+    // 请求正在进行的搜索尽快停止（可在任意线程调用）
+    public void requestStop() { stopRequested = true; }
+    public void clearStop() { stopRequested = false; }
+    boolean isStopRequested() { return stopRequested; }
+
+    // 搜索进度：主线程已完整搜索的深度，以及所有线程访问的节点总数
+    public int getCompletedDepth() { return searchers[0].completedDepth; }
+
+    public long getProgressNodes() {
+        long total = 0;
+        for (Searcher s : searchers) total += s.progressNodes;
+        return total;
+    }
+
+    // 上一次搜索中第一个合法走法就引起剪枝的比例
+    public double getFirstMoveCutoffRate() {
+        long total = 0, first = 0;
+        for (Searcher s : searchers) {
+            total += s.cutoffs;
+            first += s.firstMoveCutoffs;
+        }
+        return total == 0 ? 0 : (double) first / total;
+    }
+
+    // 上一次搜索中静态搜索的节点数（已包含在 getProgressNodes 中）
+    public long getQsearchNodes() {
+        long total = 0;
+        for (Searcher s : searchers) total += s.qNodeCount;
+        return total;
+    }
+
+    // 置换表统计：占用率（千分比）和上一次搜索的命中率
+    public int getHashfull() { return tt.hashfull(); }
+
+    public double getTTHitRate() {
+        long probes = 0, hits = 0;
+        for (Searcher s : searchers) {
+            probes += s.ttProbes;
+            hits += s.ttHits;
+        }
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    // 上一次搜索中兵型表的命中率
+    public double getPawnHashHitRate() {
+        long probes = 0, hits = 0;
+        for (Searcher s : searchers) {
+            probes += s.pawnTable.probes;
+            hits += s.pawnTable.hits;
+        }
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    // 上一次搜索中静态估值的次数（含缓存命中）与估值缓存的命中率
+    public long getEvalCalls() {
+        long total = 0;
+        for (Searcher s : searchers) total += s.evalCache.probes;
+        return total;
+    }
+
+    public double getEvalCacheHitRate() {
+        long probes = 0, hits = 0;
+        for (Searcher s : searchers) {
+            probes += s.evalCache.probes;
+            hits += s.evalCache.hits;
+        }
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    // 上一次搜索中置换表写入挤掉其他局面条目的比例
+    public double getTTOverwriteRate() {
+        long stores = 0, overwrites = 0;
+        for (Searcher s : searchers) {
+            stores += s.ttStores;
+            overwrites += s.ttOverwrites;
+        }
+        return stores == 0 ? 0 : (double) overwrites / stores;
+    }
+
+    // 切换回旧的冒泡排序（只用于基准对比）
+    synchronized void setLegacyOrdering(boolean legacy) {
+        for (Searcher s : searchers) s.legacyOrdering = legacy;
+    }
+
+    // 上一次搜索中由置换表走法产生的剪枝占全部剪枝的比例
+    public double getHashMoveCutoffRate() {
+        long total = 0, byHashMove = 0;
+        for (Searcher s : searchers) {
+            total += s.cutoffs;
+            byHashMove += s.hashMoveCutoffs;
+        }
+        return total == 0 ? 0 : (double) byHashMove / total;
+    }
+
+    // 在完整局面上按费舍尔计时的剩余时间和加秒（单位：毫秒）搜索，返回打包的走法
+    public int think(Position root, long timeLeftMs, long incrementMs) {
+        return search(root, MAX_SEARCH_DEPTH, TimeManager.forClock(timeLeftMs, incrementMs));
+    }
+
+    // 最后一轮完整迭代的分数（从根局面走子方的角度，评估单位）
+    public int getCompletedScore() { return searchers[0].completedScore; }
+
+    // 不再使用时关闭辅助线程和异步搜索线程
+    public synchronized void close() {
+        if (helperPool != null) helperPool.shutdownNow();
+        helperPool = null;
+        asyncExecutor.shutdownNow();
+        searchers = new Searcher[]{searchers[0]};
+        helperResults = new Future<?>[1];
+    }
+}
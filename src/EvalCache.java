@@ -0,0 +1,44 @@
+import java.util.Arrays;
+
+// 静态估值缓存：局面哈希 -> evaluateBoard 的结果，与置换表分开存放，叶子节点的估值不会挤掉置换表里更深的搜索结果
+// 直接映射、总是替换；每个条目一个 long：高 32 位存哈希的高 32 位用于校验，低 32 位存估值
+// 下标取自哈希的低位，和高 32 位合在一起校验的位数足够，误命中可以忽略
+// 每个搜索线程各持一张，不存在并发读写
+public class EvalCache {
+
+    static final int DEFAULT_ENTRIES = 1 << 16;
+
+    private static final long KEY_MASK = 0xFFFFFFFF00000000L;
+
+    private final long[] entries;
+    private final int mask;
+
+    // 上一次搜索中的估值次数与命中次数
+    long probes = 0;
+    long hits = 0;
+
+    // size 必须是 2 的幂
+    public EvalCache(int size) {
+        entries = new long[size];
+        mask = size - 1;
+    }
+
+    // 当前局面的估值（以白方为正），未命中时调用 evaluateBoard 计算并写入
+    int evaluate(Position pos, PawnTable pawns) {
+        probes++;
+        long hash = pos.hash;
+        int i = (int) hash & mask;
+        long entry = entries[i];
+        if (entry != 0 && (entry & KEY_MASK) == (hash & KEY_MASK)) {
+            hits++;
+            return (int) entry;
+        }
+        int eval = AI.evaluateBoard(pos, pawns);
+        entries[i] = (hash & KEY_MASK) | (eval & 0xFFFFFFFFL);
+        return eval;
+    }
+
+    void clear() {
+        Arrays.fill(entries, 0L);
+    }
+}
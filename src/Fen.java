@@ -0,0 +1,219 @@
+// FEN / EPD 的解析与生成：逐个字符扫描，不用正则表达式、不拆分字符串，直接写入引擎的 Position
+// GameBoard、AI、UCI、服务器和基准测试都通过这里载入和导出局面
+// 载入后易位权按棋子位置修正，过路兵格只在走子方真的能吃时保留（与 makeMove 的约定一致），哈希值已经算好
+public class Fen {
+
+    static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    // 下标为 棋子编码 + 6
+    private static final String PIECE_CHARS = "kqrbnp.PNBRQK";
+    private static final String CASTLING_CHARS = "KQkq";
+
+    // 载入完整的 FEN，返回全回合数；后两个字段可以省略（半回合数按 0、全回合数按 1）
+    // 格式错误时抛出 IllegalArgumentException，pos 的内容此时没有意义
+    static int load(Position pos, CharSequence fen) {
+        int i = parseFields(pos, fen);
+        int fullmove = 1;
+        i = skipSpaces(fen, i);
+        if (i < fen.length()) {
+            int end = tokenEnd(fen, i);
+            pos.halfmoveClock = parseNumber(fen, i, end);
+            i = skipSpaces(fen, end);
+            if (i < fen.length()) {
+                end = tokenEnd(fen, i);
+                fullmove = Math.max(1, parseNumber(fen, i, end));
+            }
+        }
+        finish(pos);
+        return fullmove;
+    }
+
+    // 载入 EPD 行：前四个字段是局面，后面是以分号结束的操作（例如 bm e4; id "test 1";）
+    // 半回合数取自 hmvc 操作（没有时为 0），返回操作部分在字符串中的起始下标
+    static int loadEpd(Position pos, CharSequence epd) {
+        int i = skipSpaces(epd, parseFields(pos, epd));
+        String hmvc = operand(epd, i, "hmvc");
+        if (hmvc != null) pos.halfmoveClock = parseNumber(hmvc, 0, hmvc.length());
+        finish(pos);
+        return i;
+    }
+
+    // EPD 行中某个操作的操作数（去掉引号，多个操作数之间保留一个空格），没有这个操作时返回 null
+    static String epdOperand(CharSequence epd, String opcode) {
+        return operand(epd, skipSpaces(epd, skipFields(epd, 4)), opcode);
+    }
+
+    // 生成完整的 FEN
+    static String toFen(Position pos, int fullmove) {
+        StringBuilder sb = new StringBuilder(90);
+        writeFields(pos, sb);
+        sb.append(' ').append(pos.halfmoveClock).append(' ').append(fullmove);
+        return sb.toString();
+    }
+
+    // 生成 EPD 的四个局面字段（不带操作）
+    static String toEpd(Position pos) {
+        StringBuilder sb = new StringBuilder(80);
+        writeFields(pos, sb);
+        return sb.toString();
+    }
+
+    // 棋子摆放、走子方、易位权和过路兵格四个字段，返回扫描结束的位置
+    private static int parseFields(Position pos, CharSequence s) {
+        pos.clear();
+        int n = s.length();
+        int i = skipSpaces(s, 0);
+
+        int r = 7, c = 0;
+        for (; i < n && s.charAt(i) > ' '; i++) {
+            char ch = s.charAt(i);
+            if (ch == '/') {
+                if (c != 8 || r == 0) throw error(s, "bad rank");
+                r--;
+                c = 0;
+            } else if (ch >= '1' && ch <= '8') {
+                c += ch - '0';
+                if (c > 8) throw error(s, "rank too long");
+            } else {
+                int piece = PIECE_CHARS.indexOf(ch) - 6;
+                if (piece == -7 || piece == 0 || c >= 8) throw error(s, "bad piece");
+                pos.put(r * 8 + c, piece);
+                c++;
+            }
+        }
+        if (r != 0 || c != 8) throw error(s, "placement must have 8 ranks of 8 squares");
+        if (Long.bitCount(pos.pieces(6, true)) != 1 || Long.bitCount(pos.pieces(6, false)) != 1) {
+            throw error(s, "each side needs exactly one king");
+        }
+
+        i = skipSpaces(s, i);
+        if (i < n) {
+            char side = s.charAt(i++);
+            if (side != 'w' && side != 'b') throw error(s, "bad side to move");
+            pos.whiteToMove = side == 'w';
+        }
+
+        i = skipSpaces(s, i);
+        if (i < n) {
+            for (; i < n && s.charAt(i) > ' '; i++) {
+                char ch = s.charAt(i);
+                int bit = CASTLING_CHARS.indexOf(ch);
+                if (bit >= 0) pos.castling |= 1 << bit;
+                else if (ch != '-') throw error(s, "bad castling field");
+            }
+        }
+
+        i = skipSpaces(s, i);
+        if (i < n) {
+            if (s.charAt(i) == '-') {
+                i++;
+            } else {
+                if (i + 1 >= n) throw error(s, "bad en passant square");
+                char file = s.charAt(i), rank = s.charAt(i + 1);
+                if (file < 'a' || file > 'h' || (rank != '3' && rank != '6')) throw error(s, "bad en passant square");
+                pos.epSquare = (rank - '1') * 8 + (file - 'a');
+                i += 2;
+            }
+        }
+        return i;
+    }
+
+    private static void finish(Position pos) {
+        AI.normalizeState(pos);
+        pos.hash = AI.computeFullHash(pos);
+        pos.pawnHash = AI.computePawnHash(pos);
+    }
+
+    private static void writeFields(Position pos, StringBuilder sb) {
+        for (int r = 7; r >= 0; r--) {
+            int empty = 0;
+            for (int c = 0; c < 8; c++) {
+                int piece = pos.board[r * 8 + c];
+                if (piece == 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) sb.append((char) ('0' + empty));
+                empty = 0;
+                sb.append(PIECE_CHARS.charAt(piece + 6));
+            }
+            if (empty > 0) sb.append((char) ('0' + empty));
+            if (r > 0) sb.append('/');
+        }
+        sb.append(pos.whiteToMove ? " w " : " b ");
+        if (pos.castling == 0) sb.append('-');
+        for (int bit = 0; bit < 4; bit++) {
+            if ((pos.castling & (1 << bit)) != 0) sb.append(CASTLING_CHARS.charAt(bit));
+        }
+        sb.append(' ');
+        if (pos.epSquare < 0) sb.append('-');
+        else sb.append((char) ('a' + pos.epSquare % 8)).append((char) ('1' + pos.epSquare / 8));
+    }
+
+    // 从 i 开始查找操作 opcode，返回它的操作数
+    private static String operand(CharSequence s, int i, String opcode) {
+        int n = s.length();
+        while (i < n) {
+            i = skipSpaces(s, i);
+            int end = tokenEnd(s, i);
+            boolean match = end - i == opcode.length() && regionEquals(s, i, opcode);
+            StringBuilder value = match ? new StringBuilder() : null;
+            // 操作数直到分号为止，引号内的分号不算
+            boolean quoted = false;
+            for (i = end; i < n; i++) {
+                char ch = s.charAt(i);
+                if (ch == '"') {
+                    quoted = !quoted;
+                    continue;
+                }
+                if (ch == ';' && !quoted) break;
+                if (value != null && (ch != ' ' || quoted || (value.length() > 0 && value.charAt(value.length() - 1) != ' '))) {
+                    value.append(ch);
+                }
+            }
+            if (value != null) {
+                int len = value.length();
+                if (len > 0 && value.charAt(len - 1) == ' ') value.setLength(len - 1);
+                return value.toString();
+            }
+            i++;
+        }
+        return null;
+    }
+
+    private static boolean regionEquals(CharSequence s, int i, String text) {
+        for (int k = 0; k < text.length(); k++) {
+            if (s.charAt(i + k) != text.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    // 跳过前 count 个以空白分隔的字段
+    private static int skipFields(CharSequence s, int count) {
+        int i = 0;
+        for (int f = 0; f < count; f++) i = tokenEnd(s, skipSpaces(s, i));
+        return i;
+    }
+
+    private static int skipSpaces(CharSequence s, int i) {
+        while (i < s.length() && s.charAt(i) <= ' ') i++;
+        return i;
+    }
+
+    private static int tokenEnd(CharSequence s, int i) {
+        while (i < s.length() && s.charAt(i) > ' ') i++;
+        return i;
+    }
+
+    private static int parseNumber(CharSequence s, int begin, int end) {
+        try {
+            return Integer.parseInt(s, begin, end, 10);
+        } catch (NumberFormatException e) {
+            throw error(s, "bad number");
+        }
+    }
+
+    private static IllegalArgumentException error(CharSequence s, String reason) {
+        return new IllegalArgumentException("invalid FEN (" + reason + "): " + s);
+    }
+}
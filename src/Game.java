@@ -0,0 +1,82 @@
+// 无界面的对局：用 AI 的走法生成器执行与 GameBoard 相同的规则（易位不能经过被攻击的格子、过路兵、
+// 升变、将死与逼和、五十回合、三次重复），不依赖 LibGDX，供服务器模式和压力测试客户端使用
+// legalMoves 和 AI 一样只列出升变为后；isLegal / play 也接受带升变棋子的低升变走法
+// 一个实例只能由一个线程使用
+public final class Game {
+
+    final Position pos = new Position();
+    private final AI.IntList buffer = new AI.IntList();
+    // 对局结果，例如 "1-0 checkmate"；未结束时为 null
+    private String result = null;
+
+    public Game() {
+        reset();
+    }
+
+    // 回到初始局面
+    public void reset() {
+        Fen.load(pos, Fen.START_FEN);
+        result = null;
+    }
+
+    public boolean whiteToMove() {
+        return pos.whiteToMove;
+    }
+
+    // 把当前走子方的全部合法走法写入 out
+    public void legalMoves(AI.IntList out) {
+        boolean white = pos.whiteToMove;
+        AI.generateMoves(pos, white, buffer);
+        out.clear();
+        for (int i = 0; i < buffer.size; i++) {
+            int move = buffer.data[i];
+            if (isLegalPseudo(move, white)) out.add(move);
+        }
+    }
+
+    // 走法是否合法（对局已结束时任何走法都不合法）
+    public boolean isLegal(int move) {
+        if (result != null) return false;
+        boolean white = pos.whiteToMove;
+        return AI.isPseudoLegal(pos, move, white) && isLegalPseudo(move, white);
+    }
+
+    // 走一步合法走法，然后判断对局是否结束
+    public void play(int move) {
+        AI.makeMove(pos, move);
+        pos.trimHistory();
+        updateResult();
+    }
+
+    public boolean isOver() {
+        return result != null;
+    }
+
+    public String result() {
+        return result;
+    }
+
+    // 伪合法走法走完之后己方的王不能被攻击
+    private boolean isLegalPseudo(int move, boolean white) {
+        long undo = AI.makeMove(pos, move);
+        boolean legal = !AI.isSquareAttacked(pos, AI.findKing(pos, white), !white);
+        AI.unmakeMove(pos, move, undo);
+        return legal;
+    }
+
+    private void updateResult() {
+        boolean white = pos.whiteToMove;
+        AI.generateMoves(pos, white, buffer);
+        boolean hasMove = false;
+        for (int i = 0; i < buffer.size && !hasMove; i++) hasMove = isLegalPseudo(buffer.data[i], white);
+        if (!hasMove) {
+            boolean inCheck = AI.isSquareAttacked(pos, AI.findKing(pos, white), !white);
+            if (!inCheck) result = "1/2-1/2 stalemate";
+            else result = white ? "0-1 checkmate" : "1-0 checkmate";
+        } else if (pos.halfmoveClock >= 100) {
+            result = "1/2-1/2 fifty-move rule";
+        } else if (pos.repetitionCount() >= 3) {
+            result = "1/2-1/2 threefold repetition";
+        }
+    }
+}
@@ -56,11 +56,19 @@ public class GameBoard {
     private String winnerText = "";
     private int promoR, promoC;
     private String[] promoOptions = {"queen", "rook", "bishop", "knight"};
+    // 按 AI 的棋子编码（1 兵 ~ 6 王）排列的棋子名称
+    private static final String[] PIECE_NAMES = {null, "pawn", "knight", "bishop", "rook", "queen", "king"};
 
     // 记录兵移动，用于吃过路兵判定
     private int lastPawnMoveCol = -1;
     private int lastPawnMoveRow = -1;
 
+    // 和棋判定：距上次吃子或走兵的半回合数（五十回合规则），以及每一步之后局面的哈希值（三次重复）
+    private int halfmoveClock = 0;
+    private final ArrayList<Long> positionKeys = new ArrayList<>();
+    // 全回合数（黑方走完一步加一），只用于导出 FEN
+    private int fullmoveNumber = 1;
+
     // AI 状态标志
     private boolean aiEnabled = false;
 
@@ -70,6 +78,11 @@ public class GameBoard {
     private Move pendingAiMove = null;
     private Random random = new Random();
 
+    // 后台进行中的 AI 搜索，搜索期间渲染线程照常绘制
+    private SearchTask aiSearch = null;
+    // 本盘棋自己的搜索引擎（置换表与其他对局共用 AI.defaultTable()），多个棋盘同时对局时互不干扰
+    private final Engine engine = new Engine(AI.defaultTable());
+
     public GameBoard() {
         // 加载棋盘背景
         boardTexture = new Texture(Gdx.files.internal("Assets/grey_white.png"));
@@ -146,33 +159,65 @@ public class GameBoard {
 
     // 重置棋局：摆放棋子，重置状态标志和计时器
     private void initPiecePositions() {
+        loadFen(Fen.START_FEN);
+    }
+
+    // 从 FEN 载入局面并像新开一局那样重置计时器和 AI 状态；格式错误时抛出 IllegalArgumentException，当前棋局不受影响
+    public void loadFen(String fen) {
+        Position pos = new Position();
+        int fullmove = Fen.load(pos, fen);
+
         chessBoard = new String[8][8];
-        setupRow(7, "b");
-        for (int i = 0; i < 8; i++) chessBoard[6][i] = "b-pawn";
-        setupRow(0, "w");
-        for (int i = 0; i < 8; i++) chessBoard[1][i] = "w-pawn";
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = pos.board[sq];
+            if (piece != 0) chessBoard[sq / 8][sq % 8] = (piece > 0 ? "w-" : "b-") + PIECE_NAMES[Math.abs(piece)];
+        }
+        isWhiteTurn = pos.whiteToMove;
+        // 易位权折算回"王和车是否动过"：某一侧的易位权没了就当那一侧的车动过，两侧都没了就当王动过
+        wRook7Moved = (pos.castling & Position.WHITE_OO) == 0;
+        wRook0Moved = (pos.castling & Position.WHITE_OOO) == 0;
+        bRook7Moved = (pos.castling & Position.BLACK_OO) == 0;
+        bRook0Moved = (pos.castling & Position.BLACK_OOO) == 0;
+        wKingMoved = wRook7Moved && wRook0Moved;
+        bKingMoved = bRook7Moved && bRook0Moved;
+        // 过路兵格后面一格就是刚走了两步的兵
+        if (pos.epSquare >= 0) {
+            lastPawnMoveCol = pos.epSquare % 8;
+            lastPawnMoveRow = pos.epSquare / 8 == 2 ? 3 : 4;
+        } else {
+            lastPawnMoveCol = lastPawnMoveRow = -1;
+        }
+        halfmoveClock = pos.halfmoveClock;
+        fullmoveNumber = fullmove;
 
-        isWhiteTurn = true;
         isPromoting = false;
         isGameOver = false;
         timerRunning = false;
         whiteTime = 600f;
         blackTime = 600f;
-        wKingMoved = bKingMoved = wRook0Moved = wRook7Moved = bRook0Moved = bRook7Moved = false;
-        lastPawnMoveCol = lastPawnMoveRow = -1;
+        selectedRow = -1;
+        validMoves.clear();
+        positionKeys.clear();
+        positionKeys.add(currentPosition().hash);
 
-        // 重置 AI 延迟状态
+        // 重置 AI 延迟状态，丢弃上一局还没算完的搜索
+        if (aiSearch != null) {
+            aiSearch.cancel();
+            aiSearch = null;
+        }
         isAiWaiting = false;
         aiDelayTimer = 0f;
         pendingAiMove = null;
 
         updateCheckStatus();
+        // 载入的局面可能已经分出胜负，也可能轮到 AI 走
+        checkCheckmate();
+        if (aiEnabled && !isWhiteTurn && !isGameOver) makeAIMove();
     }
 
-    // 辅助方法，快速摆放底线大棋子
-    private void setupRow(int row, String c) {
-        String[] order = {"rook", "knight", "bishop", "queen", "king", "bishop", "knight", "rook"};
-        for (int i = 0; i < 8; i++) chessBoard[row][i] = c + "-" + order[i];
+    // 当前局面的 FEN（易位权、过路兵格、半回合数和全回合数都包含在内）
+    public String exportFen() {
+        return Fen.toFen(currentPosition(), fullmoveNumber);
     }
 
     // 处理用户的鼠标点击或触摸输入
@@ -183,6 +228,9 @@ public class GameBoard {
             return;
         }
 
+        // AI 思考或延迟落子期间不接受棋盘点击
+        if (aiEnabled && !isWhiteTurn) return;
+
         float mx = Gdx.input.getX(), my = Gdx.graphics.getHeight() - Gdx.input.getY();
         if (isPromoting) {
             handlePromoClick(mx, my);
@@ -215,6 +263,10 @@ public class GameBoard {
         if (!timerRunning) timerRunning = true;
         String p = chessBoard[fr][fc];
 
+        // 吃子和走兵不可逆，半回合数清零
+        if (p.endsWith("pawn") || chessBoard[tr][tc] != null) halfmoveClock = 0;
+        else halfmoveClock++;
+
         // 特殊规则：王车易位的车位置变动
         if (p.endsWith("king") && Math.abs(tc - fc) == 2) {
             if (tc == 6) {
@@ -277,6 +329,8 @@ public class GameBoard {
     // 切换回合及后期清理
     private void switchTurn() {
         isWhiteTurn = !isWhiteTurn;
+        if (isWhiteTurn) fullmoveNumber++;
+        positionKeys.add(currentPosition().hash);
         selectedRow = -1;
         validMoves.clear();
         updateCheckStatus(); // 检查是否有王被将军
@@ -309,6 +363,7 @@ public class GameBoard {
                     calculateRealMoves(r, c, true);
                     if (!validMoves.isEmpty()) {
                         validMoves.clear();
+                        checkDraw();
                         return;
                     }
                 }
@@ -318,6 +373,17 @@ public class GameBoard {
         winnerText = (kingInCheckPos != null) ? (isWhiteTurn ? "BLACK WINS!" : "WHITE WINS!") : "STALEMATE!";
     }
 
+    // 还有棋可走时检查和棋：五十回合内没有吃子和走兵，或同一局面（同一方走、易位权和过路兵都相同）第三次出现
+    private void checkDraw() {
+        if (halfmoveClock >= 100) {
+            isGameOver = true;
+            winnerText = "DRAW! (50-MOVE RULE)";
+        } else if (currentPosition().repetitionCount() >= 3) {
+            isGameOver = true;
+            winnerText = "DRAW! (THREEFOLD REPETITION)";
+        }
+    }
+
     // 检测指定位置是否正在受到指定颜色的棋子威胁
     private boolean isAttacked(int r, int c, boolean byWhite) {
         String enemyColor = byWhite ? "w" : "b";
@@ -579,6 +645,12 @@ public class GameBoard {
         timerFont.draw(batch, bText, timerX, boardOriginY + (TILE_BLOCK_SIZE * REPEAT_COUNT) - 50);
         timerFont.draw(batch, wText, timerX, boardOriginY + 50);
 
+        // AI 思考中时显示搜索进度
+        if (aiSearch != null && aiSearch.isRunning()) {
+            font.setColor(0.9f, 0.9f, 0.9f, 1f);
+            font.draw(batch, "THINKING... DEPTH " + aiSearch.completedDepth(), timerX, boardOriginY + (TILE_BLOCK_SIZE * REPEAT_COUNT) - 110);
+        }
+
         // 如果被将军，渲染红色高亮
         if (kingInCheckPos != null && showCheckFlash)
             batch.draw(checkTexture, boardOriginX + kingInCheckPos[1] * CELL_SIZE, boardOriginY + kingInCheckPos[0] * CELL_SIZE, CELL_SIZE, CELL_SIZE);
@@ -658,6 +730,8 @@ public class GameBoard {
         font.dispose();
         timerFont.dispose();
         for (Texture t : pieceTextures.values()) t.dispose();
+        if (aiSearch != null) aiSearch.cancel();
+        engine.close();
     }
 
     //走法数据结构封装
@@ -677,12 +751,51 @@ public class GameBoard {
         this.aiEnabled = enabled;
     }
 
-    // 执行 AI 决策
+    // 执行 AI 决策：把棋盘快照交给后台线程搜索，渲染线程不再被阻塞
     private void makeAIMove() {
         // 加入将军应对逻辑
         updateCheckStatus(); // 确保将军状态是最新的
 
-        Move bestMove = AI.getBestMove(chessBoard);
+        // 按黑方剩余时间和每步加秒分配思考时间，结果通过 postRunnable 交回渲染线程处理
+        SearchTask task = SearchTask.submit(engine, currentPosition(), blackTime, INCREMENT);
+        aiSearch = task;
+        task.whenDone(move -> Gdx.app.postRunnable(() -> onAIMoveReady(task, move)));
+    }
+
+    // 当前局面的完整快照：棋子摆放、易位权、过路兵格、半回合数，以及之前各步的局面哈希（供 AI 判断重复局面）
+    private Position currentPosition() {
+        String[][] snapshot = new String[8][];
+        for (int r = 0; r < 8; r++) snapshot[r] = chessBoard[r].clone();
+
+        int castling = 0;
+        if (!wKingMoved && !wRook7Moved) castling |= Position.WHITE_OO;
+        if (!wKingMoved && !wRook0Moved) castling |= Position.WHITE_OOO;
+        if (!bKingMoved && !bRook7Moved) castling |= Position.BLACK_OO;
+        if (!bKingMoved && !bRook0Moved) castling |= Position.BLACK_OOO;
+
+        // 刚走两步的兵越过的那一格就是过路兵格
+        int epSquare = -1;
+        if (lastPawnMoveCol >= 0) {
+            int passedRow = lastPawnMoveRow == 3 ? 2 : 5;
+            epSquare = passedRow * 8 + lastPawnMoveCol;
+        }
+        Position pos = AI.toPosition(snapshot, isWhiteTurn, castling, epSquare, halfmoveClock);
+        pos.hash = AI.computeFullHash(pos);
+
+        // positionKeys 的最后一项可能就是当前局面本身，历史中不包含它
+        long[] keys = new long[positionKeys.size()];
+        int count = 0;
+        for (long key : positionKeys) keys[count++] = key;
+        if (count > 0 && keys[count - 1] == pos.hash) count--;
+        pos.setHistory(keys, count);
+        return pos;
+    }
+
+    // 后台搜索完成后在渲染线程上调用
+    private void onAIMoveReady(SearchTask task, Move bestMove) {
+        // 棋局已经重置或结束，丢弃过期的结果
+        if (task != aiSearch || isGameOver) return;
+        aiSearch = null;
 
         // 如果 AI 此时被将军 (kingInCheckPos != null)
         if (kingInCheckPos != null) {
@@ -699,8 +812,8 @@ public class GameBoard {
             // 不再直接执行，而是进入延迟队列
             pendingAiMove = bestMove;
             isAiWaiting = true;
-            // 随机生成 2 到 5 之间的浮点秒数
-            aiDelayTimer = 2.0f + random.nextFloat() * 3.0f;
+            // 随机生成 2 到 5 之间的浮点秒数，已经花在搜索上的时间从中扣除
+            aiDelayTimer = Math.max(0f, 2.0f + random.nextFloat() * 3.0f - task.elapsedMs() / 1000f);
         } else {
             // 如果非将军状态下也无子可动，判定为和棋或败北
             checkCheckmate();
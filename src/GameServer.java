@@ -0,0 +1,174 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 无界面的对局服务器：java GameServer [端口] [搜索线程数] [置换表 MB]
+// 只监听本机回环地址；每个连接是一盘棋，由一个虚拟线程负责读写（等待网络时不占用平台线程）
+// 搜索是纯计算，放到固定大小的平台线程池里执行，同时进行的搜索再多也不会把处理 I/O 的线程饿死
+// 所有对局共用一个置换表（无锁）；Engine（走法排序表、兵型表、估值缓存）跟着搜索线程走，每个线程一个，
+// 每盘棋只保存自己的 Game（局面和重复局面历史），所以连接再多，内存也只随搜索线程数增长
+// 置换表的世代不随每次搜索推进（几十盘棋同时搜索会让 6 位世代不停绕回），而是每个时间片统一推进一次
+//
+// 协议：客户端执白，AI 执黑，每条命令一行，服务器回复一行
+//   new                重新开始一盘            -> ok
+//   movetime <毫秒>    设置 AI 每步的思考时间  -> ok，参数缺失或不是数字时 error bad movetime
+//   move <走法>        白方走一步，例如 e2e4   -> bestmove <黑方应着> [result <结果> <原因>]
+//                      （升变可带 q/r/b/n）       或 result <结果> <原因>（白方这步就结束了对局）
+//                                                 或 illegal
+//   quit               断开连接
+public class GameServer {
+
+    static final int DEFAULT_PORT = 7777;
+    private static final int DEFAULT_MOVE_TIME_MS = 100;
+    // 置换表世代的时间片：64 个世代约覆盖一分钟，足够区分正在进行的对局和早已结束的对局留下的条目
+    private static final long TT_AGE_INTERVAL_MS = 1000;
+
+    private final ServerSocket serverSocket;
+    private final TranspositionTable tt;
+    private final ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService searchPool;
+    private final ScheduledExecutorService ager;
+    // 每个搜索线程自己的引擎，第一次在这个线程上搜索时创建
+    private final ThreadLocal<Engine> workerEngine;
+
+    public GameServer(int port, int searchThreads, int hashMb) throws IOException {
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.tt = new TranspositionTable(hashMb);
+        this.workerEngine = ThreadLocal.withInitial(() -> new Engine(tt, false));
+        this.searchPool = Executors.newFixedThreadPool(searchThreads, r -> {
+            Thread t = new Thread(r, "server-search");
+            t.setDaemon(true);
+            return t;
+        });
+        this.ager = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "server-tt-age");
+            t.setDaemon(true);
+            return t;
+        });
+        ager.scheduleAtFixedRate(tt::newSearch, TT_AGE_INTERVAL_MS, TT_AGE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int hashMb = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        GameServer server = new GameServer(port, threads, hashMb);
+        System.out.println("GameServer listening on " + server.serverSocket.getLocalSocketAddress()
+                + ", " + threads + " search threads, " + hashMb + " MB hash");
+        server.serve();
+    }
+
+    // 接受连接，直到服务器被关闭
+    public void serve() throws IOException {
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket socket = serverSocket.accept();
+                sessions.submit(() -> runSession(socket));
+            }
+        } catch (IOException e) {
+            if (!serverSocket.isClosed()) throw e;
+        }
+    }
+
+    public void close() throws IOException {
+        serverSocket.close();
+        sessions.shutdownNow();
+        searchPool.shutdownNow();
+        ager.shutdownNow();
+    }
+
+    // 一个连接上的一盘（或多盘）棋，在虚拟线程中运行
+    private void runSession(Socket socket) {
+        Game game = new Game();
+        int moveTimeMs = DEFAULT_MOVE_TIME_MS;
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.trim().split("\\s+");
+                switch (parts[0]) {
+                    case "new":
+                        game.reset();
+                        out.println("ok");
+                        break;
+                    case "movetime":
+                        int ms = parseMoveTime(parts);
+                        if (ms > 0) {
+                            moveTimeMs = ms;
+                            out.println("ok");
+                        } else {
+                            out.println("error bad movetime");
+                        }
+                        break;
+                    case "move":
+                        out.println(playMove(game, parts.length > 1 ? parts[1] : "", moveTimeMs));
+                        break;
+                    case "quit":
+                        return;
+                    default:
+                        out.println("error unknown command");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // 客户端断开或发来无法解析的命令：结束这个会话，不影响其他对局
+        }
+    }
+
+    // 白方走一步，AI 应一步，返回回复的内容
+    private String playMove(Game game, String text, int moveTimeMs) {
+        if (!isCoordinateMove(text) || !game.whiteToMove()) return "illegal";
+        int move = AI.parseMove(text);
+        if (!game.isLegal(move)) return "illegal";
+        game.play(move);
+        if (game.isOver()) return "result " + game.result();
+
+        // 计时从搜索真正开始时算起，在线程池里排队的时间不占用思考时间；
+        // 引擎是执行这次搜索的线程的，对局的局面和历史由 search 复制进去
+        Future<Integer> search = searchPool.submit(() ->
+                workerEngine.get().search(game.pos, Engine.MAX_SEARCH_DEPTH, TimeManager.fixed(moveTimeMs)));
+        int reply;
+        try {
+            reply = search.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("session interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("search failed", e.getCause());
+        }
+        game.play(reply);
+        String answer = "bestmove " + AI.moveToString(reply);
+        return game.isOver() ? answer + " result " + game.result() : answer;
+    }
+
+    // movetime 命令的毫秒数（至少为 1），缺少参数或不是数字时返回 -1
+    private static int parseMoveTime(String[] parts) {
+        if (parts.length < 2) return -1;
+        try {
+            return Math.max(1, Integer.parseInt(parts[1]));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // 形如 e2e4 的坐标记法，升变可以带后缀 q/r/b/n（不带时升变为后）
+    private static boolean isCoordinateMove(String text) {
+        if (text.length() != 4 && (text.length() != 5 || "qrbn".indexOf(text.charAt(4)) < 0)) return false;
+        for (int i = 0; i < 4; i += 2) {
+            char file = text.charAt(i), rank = text.charAt(i + 1);
+            if (file < 'a' || file > 'h' || rank < '1' || rank > '8') return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// GameServer 的压力测试客户端：java LoadGenerator [对局数] [每局白方步数] [AI 每步毫秒] [端口]
+// 每盘棋一个虚拟线程，白方随机走合法走法（客户端自己用 Game 跟踪局面），对局结束就开新局
+// 统计服务器每步的往返延迟（白方发出走法到收到黑方应着），最后报告每秒步数和 p50 / p99 延迟
+public class LoadGenerator {
+
+    public static void main(String[] args) throws InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int movesPerGame = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int moveTimeMs = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : GameServer.DEFAULT_PORT;
+
+        long[][] latencies = new long[games][];
+        AtomicInteger failures = new AtomicInteger();
+        List<Thread> clients = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int g = 0; g < games; g++) {
+            final int id = g;
+            clients.add(Thread.ofVirtual().name("load-" + g).start(() -> {
+                try {
+                    latencies[id] = playGame(port, movesPerGame, moveTimeMs);
+                } catch (IOException | RuntimeException e) {
+                    failures.incrementAndGet();
+                    latencies[id] = new long[0];
+                }
+            }));
+        }
+        for (Thread t : clients) t.join();
+        long elapsedNanos = System.nanoTime() - start;
+
+        int total = 0;
+        for (long[] l : latencies) total += l.length;
+        long[] all = new long[total];
+        int n = 0;
+        for (long[] l : latencies) {
+            System.arraycopy(l, 0, all, n, l.length);
+            n += l.length;
+        }
+        Arrays.sort(all);
+
+        System.out.println(games + " games, " + total + " moves in " + elapsedNanos / 1_000_000 + " ms, "
+                + failures.get() + " failed connections");
+        if (total == 0) {
+            System.exit(1);
+        }
+        System.out.printf("%.1f moves/s, latency p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                total * 1e9 / elapsedNanos, percentile(all, 50) / 1e6, percentile(all, 99) / 1e6, all[total - 1] / 1e6);
+    }
+
+    // 在一个连接上走满 moves 步白棋，返回每一步的往返延迟（纳秒）
+    private static long[] playGame(int port, int moves, int moveTimeMs) throws IOException {
+        long[] latency = new long[moves];
+        int count = 0;
+        Game game = new Game();
+        AI.IntList legal = new AI.IntList();
+        try (Socket socket = new Socket("localhost", port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+            request(out, in, "movetime " + moveTimeMs);
+            request(out, in, "new");
+            while (count < moves) {
+                game.legalMoves(legal);
+                int move = legal.data[ThreadLocalRandom.current().nextInt(legal.size)];
+                game.play(move);
+
+                long t0 = System.nanoTime();
+                String reply = request(out, in, "move " + AI.moveToString(move));
+                latency[count++] = System.nanoTime() - t0;
+
+                if (reply.startsWith("bestmove ")) {
+                    game.play(AI.parseMove(reply.substring("bestmove ".length())));
+                } else if (!reply.startsWith("result ")) {
+                    throw new IllegalStateException("unexpected reply: " + reply);
+                }
+                // 服务器和客户端按同样的规则判定结果，任何一方结束了对局就开新局
+                if (game.isOver()) {
+                    request(out, in, "new");
+                    game.reset();
+                }
+            }
+            out.println("quit");
+        }
+        return latency;
+    }
+
+    private static String request(PrintWriter out, BufferedReader in, String command) throws IOException {
+        out.println(command);
+        String reply = in.readLine();
+        if (reply == null) throw new IOException("server closed the connection");
+        return reply;
+    }
+
+    private static long percentile(long[] sorted, int p) {
+        int i = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))];
+    }
+}
@@ -0,0 +1,161 @@
+// 分阶段走法选择器：按需生成、按需排序，每个走法只打分一次
+// 顺序：置换表走法 -> 好的吃子（MVV-LVA 排序，SEE 不亏） -> 杀手走法 -> 反击走法 -> 按历史分排序的安静走法 -> 坏的吃子
+// 每次 next() 只从剩余走法中挑出分数最高的一个（惰性选择），一旦剪枝，剩下的走法既不排序也不生成
+class MovePicker {
+
+    private static final int STAGE_HASH = 0;
+    private static final int STAGE_GEN_CAPTURES = 1;
+    private static final int STAGE_GOOD_CAPTURES = 2;
+    private static final int STAGE_KILLER_1 = 3;
+    private static final int STAGE_KILLER_2 = 4;
+    private static final int STAGE_COUNTER = 5;
+    private static final int STAGE_GEN_QUIETS = 6;
+    private static final int STAGE_QUIETS = 7;
+    private static final int STAGE_BAD_CAPTURES = 8;
+    private static final int STAGE_DONE = 9;
+    // 旧的"全部生成后冒泡排序"方式，只保留给基准测试做对比
+    private static final int STAGE_LEGACY_GEN = 10;
+    private static final int STAGE_LEGACY = 11;
+
+    // 吃子和安静走法共用一个列表：[0, captureEnd) 为吃子，其后为安静走法；scores 与之一一对应
+    private final AI.IntList moves = new AI.IntList();
+    private final int[] scores = new int[256];
+    private final int[] badCaptures = new int[256];
+
+    private Position pos;
+    private boolean isWhite;
+    private boolean legacy;
+    private boolean capturesOnly;
+    private int hashMove, killer1, killer2, counter;
+    private int[] history;
+    private int stage, index, captureEnd, badCount, badIndex;
+
+    // 开始为一个节点挑选走法；hashMove 必须已经过伪合法校验（或为 0）
+    void init(Position pos, boolean isWhite, int hashMove, int killer1, int killer2, int counter, int[] history,
+              boolean legacy) {
+        this.pos = pos;
+        this.isWhite = isWhite;
+        this.hashMove = hashMove;
+        this.killer1 = killer1;
+        this.killer2 = killer2;
+        this.counter = counter;
+        this.history = history;
+        this.legacy = legacy;
+        this.capturesOnly = false;
+        moves.clear();
+        index = 0;
+        badCount = 0;
+        badIndex = 0;
+        if (hashMove != 0) stage = STAGE_HASH;
+        else stage = legacy ? STAGE_LEGACY_GEN : STAGE_GEN_CAPTURES;
+    }
+
+    // 静态搜索用：只给出不亏的吃子和升变，亏本的吃子直接剪掉（SEE 剪枝）
+    void initCaptures(Position pos, boolean isWhite) {
+        init(pos, isWhite, 0, 0, 0, 0, null, false);
+        capturesOnly = true;
+    }
+
+    // 返回下一个要搜索的伪合法走法，全部给出后返回 0
+    int next() {
+        while (true) {
+            switch (stage) {
+                case STAGE_HASH:
+                    stage = legacy ? STAGE_LEGACY_GEN : STAGE_GEN_CAPTURES;
+                    return hashMove;
+
+                case STAGE_GEN_CAPTURES:
+                    AI.generateCaptures(pos, isWhite, moves);
+                    captureEnd = moves.size;
+                    for (int i = 0; i < captureEnd; i++) scores[i] = AI.captureScore(pos, moves.data[i]);
+                    stage = STAGE_GOOD_CAPTURES;
+                    break;
+
+                case STAGE_GOOD_CAPTURES:
+                    while (index < captureEnd) {
+                        int move = pickBest(captureEnd);
+                        if (move == hashMove) continue;
+                        // 亏本的吃子留到最后再试
+                        if (!See.seeGe(pos, move, 0)) {
+                            if (!capturesOnly) badCaptures[badCount++] = move;
+                            continue;
+                        }
+                        return move;
+                    }
+                    stage = capturesOnly ? STAGE_DONE : STAGE_KILLER_1;
+                    break;
+
+                case STAGE_KILLER_1:
+                    stage = STAGE_KILLER_2;
+                    if (isUsableKiller(killer1)) return killer1;
+                    break;
+
+                case STAGE_KILLER_2:
+                    stage = STAGE_COUNTER;
+                    if (killer2 != killer1 && isUsableKiller(killer2)) return killer2;
+                    break;
+
+                case STAGE_COUNTER:
+                    stage = STAGE_GEN_QUIETS;
+                    if (counter != killer1 && counter != killer2 && isUsableKiller(counter)) return counter;
+                    break;
+
+                case STAGE_GEN_QUIETS:
+                    AI.generateQuiets(pos, isWhite, moves);
+                    for (int i = captureEnd; i < moves.size; i++) scores[i] = history[moves.data[i] & 0xFFF];
+                    stage = STAGE_QUIETS;
+                    break;
+
+                case STAGE_QUIETS:
+                    while (index < moves.size) {
+                        int move = pickBest(moves.size);
+                        if (move == hashMove || move == killer1 || move == killer2 || move == counter) continue;
+                        return move;
+                    }
+                    stage = STAGE_BAD_CAPTURES;
+                    break;
+
+                case STAGE_BAD_CAPTURES:
+                    if (badIndex < badCount) return badCaptures[badIndex++];
+                    stage = STAGE_DONE;
+                    break;
+
+                case STAGE_LEGACY_GEN:
+                    AI.generateMoves(pos, isWhite, moves);
+                    AI.orderMoves(pos, moves);
+                    stage = STAGE_LEGACY;
+                    break;
+
+                case STAGE_LEGACY:
+                    while (index < moves.size) {
+                        int move = moves.data[index++];
+                        if (move != hashMove) return move;
+                    }
+                    stage = STAGE_DONE;
+                    break;
+
+                default:
+                    return 0;
+            }
+        }
+    }
+
+    // 惰性选择：把 [index, end) 中分数最高的走法换到 index 位置并返回
+    private int pickBest(int end) {
+        int best = index;
+        for (int i = index + 1; i < end; i++) {
+            if (scores[i] > scores[best]) best = i;
+        }
+        int move = moves.data[best];
+        moves.data[best] = moves.data[index];
+        scores[best] = scores[index];
+        moves.data[index] = move;
+        index++;
+        return move;
+    }
+
+    // 杀手走法和反击走法来自别的局面，必须是安静走法且在当前局面下伪合法
+    private boolean isUsableKiller(int move) {
+        return move != 0 && move != hashMove && AI.isQuiet(pos, move) && AI.isPseudoLegal(pos, move, isWhite);
+    }
+}
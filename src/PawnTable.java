@@ -0,0 +1,181 @@
+import java.util.Arrays;
+
+// 兵型哈希表：兵的结构（通路兵、叠兵、孤兵、落后兵）计算起来费时，但搜索中很少改变，
+// 所以按只包含兵的 Zobrist 键（Position.pawnHash）缓存兵型的中局分、残局分和双方通路兵的位置
+// 直接映射、总是替换；每个搜索线程各持一张，不存在并发读写
+public class PawnTable {
+
+    static final int DEFAULT_ENTRIES = 1 << 14;
+
+    private static final int W_PAWN = 1, W_KING = 6;
+
+    // 兵型各项的分值（厘兵，中局 / 残局），按走子方自己的视角给出
+    private static final int DOUBLED_MG = -10, DOUBLED_EG = -25;
+    private static final int ISOLATED_MG = -12, ISOLATED_EG = -15;
+    private static final int BACKWARD_MG = -8, BACKWARD_EG = -10;
+    // 通路兵按相对横线（0 = 己方底线）加分，越靠近升变格越值钱
+    private static final int[] PASSED_MG = {0, 5, 10, 15, 25, 40, 60, 0};
+    private static final int[] PASSED_EG = {0, 10, 15, 25, 45, 75, 120, 0};
+    // 前方没有被挡住的通路兵再额外加的残局分
+    private static final int[] FREE_PASSER_EG = {0, 0, 5, 10, 20, 35, 60, 0};
+    // 王前护盾：王所在列及相邻两列、紧挨着王和隔一行的己方兵（只在中局有意义）
+    private static final int SHIELD_NEAR_MG = 12, SHIELD_FAR_MG = 6;
+
+    // FILES[列]、ADJACENT_FILES[列]：整列和左右相邻两列
+    private static final long[] FILES = new long[8];
+    private static final long[] ADJACENT_FILES = new long[8];
+    // FORWARD_RANKS[颜色][行]：在该方看来比这一行更靠前的所有横线
+    private static final long[][] FORWARD_RANKS = new long[2][8];
+    // PASSED_SPANS[颜色][格子]：前方本列和相邻两列，这里没有对方的兵就是通路兵
+    private static final long[][] PASSED_SPANS = new long[2][64];
+    private static final long[][] SHIELD_NEAR = new long[2][64];
+    private static final long[][] SHIELD_FAR = new long[2][64];
+
+    static {
+        for (int c = 0; c < 8; c++) FILES[c] = Bitboards.FILE_A << c;
+        for (int c = 0; c < 8; c++) {
+            ADJACENT_FILES[c] = (c > 0 ? FILES[c - 1] : 0L) | (c < 7 ? FILES[c + 1] : 0L);
+        }
+        for (int r = 0; r < 8; r++) {
+            for (int ahead = r + 1; ahead < 8; ahead++) FORWARD_RANKS[Position.WHITE][r] |= Bitboards.RANK_1 << (8 * ahead);
+            for (int ahead = r - 1; ahead >= 0; ahead--) FORWARD_RANKS[Position.BLACK][r] |= Bitboards.RANK_1 << (8 * ahead);
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            int r = sq / 8, c = sq % 8;
+            long span = FILES[c] | ADJACENT_FILES[c];
+            for (int side = 0; side < 2; side++) {
+                PASSED_SPANS[side][sq] = FORWARD_RANKS[side][r] & span;
+                int dir = side == Position.WHITE ? 1 : -1;
+                if (r + dir >= 0 && r + dir < 8) SHIELD_NEAR[side][sq] = span & (Bitboards.RANK_1 << (8 * (r + dir)));
+                if (r + 2 * dir >= 0 && r + 2 * dir < 8) SHIELD_FAR[side][sq] = span & (Bitboards.RANK_1 << (8 * (r + 2 * dir)));
+            }
+        }
+    }
+
+    private final long[] keys;
+    private final int[] mgScores;
+    private final int[] egScores;
+    private final long[] passedPawns;
+    private final int mask;
+
+    // 上一次搜索中的探测次数与命中次数
+    long probes = 0;
+    long hits = 0;
+
+    // entries 必须是 2 的幂
+    public PawnTable(int entries) {
+        keys = new long[entries];
+        mgScores = new int[entries];
+        egScores = new int[entries];
+        passedPawns = new long[entries];
+        mask = entries - 1;
+    }
+
+    // 查找当前兵型，未命中时现场计算并写入，返回条目下标
+    // 空表的键全为 0，恰好与"双方都没有兵"的键相同，而那个局面的兵型分本来就是 0，所以不必区分空条目
+    int probe(Position pos) {
+        probes++;
+        long key = pos.pawnHash;
+        int i = (int) key & mask;
+        if (keys[i] == key) {
+            hits++;
+            return i;
+        }
+        keys[i] = key;
+        evaluate(pos, i);
+        return i;
+    }
+
+    // 条目中兵型的中局分、残局分（以白方为正）以及双方通路兵的位棋盘
+    int mg(int entry) { return mgScores[entry]; }
+    int eg(int entry) { return egScores[entry]; }
+    long passed(int entry) { return passedPawns[entry]; }
+
+    void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(mgScores, 0);
+        Arrays.fill(egScores, 0);
+        Arrays.fill(passedPawns, 0L);
+    }
+
+    private void evaluate(Position pos, int entry) {
+        long white = pos.pieces(W_PAWN, true);
+        long black = pos.pieces(W_PAWN, false);
+        int mg = 0, eg = 0;
+        long passed = 0L;
+        for (int side = 0; side < 2; side++) {
+            boolean isWhite = side == Position.WHITE;
+            long own = isWhite ? white : black;
+            long enemy = isWhite ? black : white;
+            int sign = isWhite ? 1 : -1;
+            long bb = own;
+            while (bb != 0) {
+                int sq = Bitboards.lsb(bb);
+                bb &= bb - 1;
+                int r = sq / 8, c = sq % 8;
+                int relRank = isWhite ? r : 7 - r;
+                long ahead = FORWARD_RANKS[side][r];
+
+                // 同一列前方还有自己的兵：后面这个是叠兵，也不算通路兵
+                boolean doubled = (own & ahead & FILES[c]) != 0;
+                if (doubled) {
+                    mg += sign * DOUBLED_MG;
+                    eg += sign * DOUBLED_EG;
+                } else if ((enemy & PASSED_SPANS[side][sq]) == 0) {
+                    passed |= 1L << sq;
+                    mg += sign * PASSED_MG[relRank];
+                    eg += sign * PASSED_EG[relRank];
+                }
+
+                if ((own & ADJACENT_FILES[c]) == 0) {
+                    mg += sign * ISOLATED_MG;
+                    eg += sign * ISOLATED_EG;
+                } else if ((own & ADJACENT_FILES[c] & ~ahead) == 0) {
+                    // 相邻列的兵都已经走到前面，没人能再保护它；前进一格的格子又被对方兵控制，就是落后兵
+                    int stop = sq + (isWhite ? 8 : -8);
+                    if ((Bitboards.PAWN_ATTACKS[side][stop] & enemy) != 0) {
+                        mg += sign * BACKWARD_MG;
+                        eg += sign * BACKWARD_EG;
+                    }
+                }
+            }
+        }
+        mgScores[entry] = mg;
+        egScores[entry] = eg;
+        passedPawns[entry] = passed;
+    }
+
+    // 前方一格是空的通路兵（残局分，以白方为正）；是否被挡住取决于其他棋子，所以同样不进表
+    static int freePassers(Position pos, long passed) {
+        long white = passed & pos.colors[Position.WHITE];
+        long black = passed & pos.colors[Position.BLACK];
+        int score = 0;
+        while (white != 0) {
+            int sq = Bitboards.lsb(white);
+            white &= white - 1;
+            if (pos.board[sq + 8] == 0) score += FREE_PASSER_EG[sq / 8];
+        }
+        while (black != 0) {
+            int sq = Bitboards.lsb(black);
+            black &= black - 1;
+            if (pos.board[sq - 8] == 0) score -= FREE_PASSER_EG[7 - sq / 8];
+        }
+        return score;
+    }
+
+    // 王前护盾的中局分（以白方为正）；依赖王的位置，王经常移动，所以不放进兵型表，每次现算（只是几次位运算）
+    static int kingShield(Position pos) {
+        int score = 0;
+        for (int side = 0; side < 2; side++) {
+            boolean isWhite = side == Position.WHITE;
+            long king = pos.pieces(W_KING, isWhite);
+            if (king == 0) continue;
+            int k = Bitboards.lsb(king);
+            long own = pos.pieces(W_PAWN, isWhite);
+            int shield = SHIELD_NEAR_MG * Long.bitCount(own & SHIELD_NEAR[side][k])
+                    + SHIELD_FAR_MG * Long.bitCount(own & SHIELD_FAR[side][k]);
+            score += isWhite ? shield : -shield;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,258 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// 走法生成的正确性与速度测试：从给定局面出发数出指定深度的全部合法走法序列（叶子节点数）
+// java Perft <深度> [线程数] [哈希表 MB，0 为不用] [FEN]  逐个根走法输出子树节点数（divide），再给出总数和 Mnps
+// 根走法分给 ForkJoinPool 并行计算；最后一层不逐个走子展开，按牵制和将军直接判断合法性，只数合法走法（批量计数）
+// 可选的哈希表按 局面哈希 + 剩余深度 缓存子树节点数，所有线程共用，无锁
+// 引擎的走法生成只给出升变为后，perft 在这里把每个升变再展开成马、象、车三种低升变，结果与标准 perft 表一致
+public class Perft {
+
+    // 标准测试局面：名称、FEN、深度、期望节点数（Bench perft 用作回归测试；position 4、5 和 3 的第 6 层都包含升变和低升变）
+    static final String[][] SUITE = {
+            {"startpos", Fen.START_FEN, "5", "4865609"},
+            {"kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", "3", "97862"},
+            {"position 3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", "6", "11030083"},
+            {"position 4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", "4", "422333"},
+            {"position 5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", "3", "62379"},
+            {"position 6", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", "4", "3894594"},
+    };
+
+    private static final int W_PAWN = 1, W_KNIGHT = 2, W_BISHOP = 3, W_ROOK = 4, W_QUEEN = 5, W_KING = 6;
+    // 每个升变走法展开出的走法数（后、马、象、车）
+    private static final int PROMOTION_KINDS = 4;
+    // 同一直线或斜线上两格之间的格子（不含两端），以及经过两格的整条线；不在一条线上时为 0
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        for (int a = 0; a < 64; a++) {
+            for (int dir = 0; dir < 8; dir++) {
+                long ray = Bitboards.RAYS[dir][a];
+                long line = ray | Bitboards.RAYS[(dir + 4) & 7][a] | (1L << a);
+                for (long rest = ray; rest != 0; rest &= rest - 1) {
+                    int b = Bitboards.lsb(rest);
+                    BETWEEN[a][b] = ray & ~Bitboards.RAYS[dir][b] & ~(1L << b);
+                    LINE[a][b] = line;
+                }
+            }
+        }
+    }
+
+    private final Position pos = new Position();
+    private final AI.IntList[] moves = new AI.IntList[AI.MAX_PLY];
+    private final Table table;
+
+    Perft(Position root, Table table) {
+        pos.copyFrom(root);
+        this.table = table;
+        for (int i = 0; i < moves.length; i++) moves[i] = new AI.IntList();
+    }
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int hashMb = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        String fen = args.length > 3 ? String.join(" ", Arrays.copyOfRange(args, 3, args.length)) : Fen.START_FEN;
+        Position root = new Position();
+        Fen.load(root, fen);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        List<long[]> divide = divide(pool, root, depth, hashMb > 0 ? new Table(hashMb) : null);
+        long ns = System.nanoTime() - start;
+        pool.shutdown();
+
+        long total = 0;
+        for (long[] entry : divide) {
+            System.out.println(AI.moveToString((int) entry[0]) + ": " + entry[1]);
+            total += entry[1];
+        }
+        System.out.printf("%nmoves %d, nodes %d, %d ms, %.1f Mnps (%d threads, hash %d MB)%n",
+                divide.size(), total, ns / 1_000_000, total * 1e3 / ns, threads, hashMb);
+    }
+
+    // 根局面的每个合法走法及其子树的节点数 {走法, 节点数}，按走法的坐标记法排序；depth 至少为 1
+    static List<long[]> divide(ForkJoinPool pool, Position root, int depth, Table table) {
+        Perft probe = new Perft(root, null);
+        AI.IntList list = probe.moves[0];
+        probe.legalMoves(list);
+        List<RecursiveTask<Long>> tasks = new ArrayList<>();
+        for (int i = 0; i < list.size; i++) {
+            int move = list.data[i];
+            tasks.add(new RecursiveTask<Long>() {
+                @Override
+                protected Long compute() {
+                    Perft worker = new Perft(root, table);
+                    AI.makeMove(worker.pos, move);
+                    return worker.count(depth - 1, 1);
+                }
+            });
+        }
+        for (RecursiveTask<Long> task : tasks) pool.execute(task);
+        List<long[]> result = new ArrayList<>();
+        for (int i = 0; i < list.size; i++) result.add(new long[]{list.data[i], tasks.get(i).join()});
+        result.sort((a, b) -> AI.moveToString((int) a[0]).compareTo(AI.moveToString((int) b[0])));
+        return result;
+    }
+
+    // 根局面 depth 层的叶子节点总数
+    static long run(ForkJoinPool pool, Position root, int depth, Table table) {
+        if (depth == 0) return 1;
+        long total = 0;
+        for (long[] entry : divide(pool, root, depth, table)) total += entry[1];
+        return total;
+    }
+
+    private long count(int depth, int ply) {
+        if (depth == 0) return 1;
+        if (depth == 1) return countLegal(ply);
+        long key = 0;
+        if (table != null && depth >= 2) {
+            key = pos.hash ^ Table.DEPTH_KEYS[depth];
+            long cached = table.probe(key);
+            if (cached >= 0) return cached;
+        }
+
+        boolean white = pos.whiteToMove;
+        AI.IntList list = moves[ply];
+        AI.generateMoves(pos, white, list);
+        long nodes = 0;
+        for (int i = 0; i < list.size; i++) {
+            int base = list.data[i];
+            int kinds = isPromotion(base) ? PROMOTION_KINDS : 1;
+            for (int kind = 0; kind < kinds; kind++) {
+                int move = base | (kind << AI.PROMOTION_SHIFT);
+                long undo = AI.makeMove(pos, move);
+                if (!AI.isSquareAttacked(pos, AI.findKing(pos, white), !white)) nodes += count(depth - 1, ply + 1);
+                AI.unmakeMove(pos, move, undo);
+            }
+        }
+
+        if (key != 0) table.store(key, nodes);
+        return nodes;
+    }
+
+    // 批量计数：最后一层不走子，用将军和牵制关系直接判断每个伪合法走法是否合法
+    // 只有吃过路兵（可能同时移走横线上的两个子）还是走一步再检查
+    private long countLegal(int ply) {
+        boolean white = pos.whiteToMove;
+        int king = AI.findKing(pos, white);
+        long kingBit = 1L << king;
+        long occ = pos.occupied;
+        long checkers = attackers(king, !white, occ);
+        // 被将军时，非王走法只能吃掉将军的子或挡在中间；双将时只能走王
+        long evasions = checkers == 0 ? ~0L
+                : Long.bitCount(checkers) > 1 ? 0 : checkers | BETWEEN[king][Bitboards.lsb(checkers)];
+        long pinned = pinned(king, white, occ);
+
+        AI.IntList list = moves[ply];
+        AI.generateMoves(pos, white, list);
+        long nodes = 0;
+        for (int i = 0; i < list.size; i++) {
+            int move = list.data[i];
+            int from = (move >> 6) & 0x3F, to = move & 0x3F;
+            boolean legal;
+            if (from == king) {
+                // 王离开原来的格子后，沿着将军线的那一格也被攻击，所以计算时把王从占位中拿掉
+                legal = attackers(to, !white, occ ^ kingBit) == 0;
+            } else if (to == pos.epSquare && Math.abs(pos.board[from]) == W_PAWN) {
+                long undo = AI.makeMove(pos, move);
+                legal = !AI.isSquareAttacked(pos, king, !white);
+                AI.unmakeMove(pos, move, undo);
+            } else {
+                legal = (evasions & (1L << to)) != 0 && ((pinned & (1L << from)) == 0 || (LINE[king][from] & (1L << to)) != 0);
+            }
+            if (legal) nodes += isPromotion(move) ? PROMOTION_KINDS : 1;
+        }
+        return nodes;
+    }
+
+    // byWhite 一方攻击 sq 的全部棋子，滑动子按给定的占位计算
+    private long attackers(int sq, boolean byWhite, long occ) {
+        long queens = pos.pieces(W_QUEEN, byWhite);
+        return (Bitboards.PAWN_ATTACKS[byWhite ? Position.BLACK : Position.WHITE][sq] & pos.pieces(W_PAWN, byWhite))
+                | (Bitboards.KNIGHT_ATTACKS[sq] & pos.pieces(W_KNIGHT, byWhite))
+                | (Bitboards.KING_ATTACKS[sq] & pos.pieces(W_KING, byWhite))
+                | (Bitboards.bishopAttacks(sq, occ) & (pos.pieces(W_BISHOP, byWhite) | queens))
+                | (Bitboards.rookAttacks(sq, occ) & (pos.pieces(W_ROOK, byWhite) | queens));
+    }
+
+    // 被对方滑动子牵制在王前面的己方棋子
+    private long pinned(int king, boolean white, long occ) {
+        long queens = pos.pieces(W_QUEEN, !white);
+        long snipers = (Bitboards.rookAttacks(king, 0) & (pos.pieces(W_ROOK, !white) | queens))
+                | (Bitboards.bishopAttacks(king, 0) & (pos.pieces(W_BISHOP, !white) | queens));
+        long own = pos.colors[white ? Position.WHITE : Position.BLACK];
+        long pinned = 0;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = BETWEEN[king][Bitboards.lsb(snipers)] & occ;
+            if (Long.bitCount(blockers) == 1) pinned |= blockers & own;
+        }
+        return pinned;
+    }
+
+    // 兵走到底线（生成的走法都是升变为后）
+    private boolean isPromotion(int move) {
+        int to = move & 0x3F;
+        return Math.abs(pos.board[(move >> 6) & 0x3F]) == W_PAWN && (to < 8 || to >= 56);
+    }
+
+    // 根局面的全部合法走法，升变展开成四种
+    private void legalMoves(AI.IntList out) {
+        boolean white = pos.whiteToMove;
+        AI.IntList pseudo = moves[1];
+        AI.generateMoves(pos, white, pseudo);
+        out.clear();
+        for (int i = 0; i < pseudo.size; i++) {
+            int base = pseudo.data[i];
+            int kinds = isPromotion(base) ? PROMOTION_KINDS : 1;
+            for (int kind = 0; kind < kinds; kind++) {
+                int move = base | (kind << AI.PROMOTION_SHIFT);
+                long undo = AI.makeMove(pos, move);
+                if (!AI.isSquareAttacked(pos, AI.findKing(pos, white), !white)) out.add(move);
+                AI.unmakeMove(pos, move, undo);
+            }
+        }
+    }
+
+    // perft 哈希表：直接映射、总是替换，每个条目两个 long（键 ^ 节点数、节点数），
+    // 读取时用异或校验，多线程同时写同一个条目也只会读到未命中，不会读到错误的数
+    static class Table {
+
+        // 与局面哈希异或的深度键，同一局面不同剩余深度的结果互不混淆
+        static final long[] DEPTH_KEYS = new long[AI.MAX_PLY];
+
+        static {
+            Random random = new Random(0x5EEDL);
+            for (int i = 0; i < DEPTH_KEYS.length; i++) DEPTH_KEYS[i] = random.nextLong();
+        }
+
+        private final long[] entries;
+        private final int mask;
+
+        Table(int sizeMb) {
+            long slots = Math.max(1, sizeMb) * 1024L * 1024L / 16;
+            int size = Integer.highestOneBit((int) Math.min(slots, 1 << 28));
+            entries = new long[size * 2];
+            mask = size - 1;
+        }
+
+        // 命中时返回节点数，未命中返回 -1
+        long probe(long key) {
+            int i = ((int) key & mask) * 2;
+            long nodes = entries[i + 1];
+            return (entries[i] ^ nodes) == key && nodes != 0 ? nodes : -1;
+        }
+
+        void store(long key, long nodes) {
+            int i = ((int) key & mask) * 2;
+            entries[i] = key ^ nodes;
+            entries[i + 1] = nodes;
+        }
+    }
+}
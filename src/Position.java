@@ -0,0 +1,169 @@
+public class Position {
+
+    // 颜色下标：0 为白方，1 为黑方
+    static final int WHITE = 0, BLACK = 1;
+    // 易位权的位标志：白方短易位、白方长易位、黑方短易位、黑方长易位
+    static final int WHITE_OO = 1, WHITE_OOO = 2, BLACK_OO = 4, BLACK_OOO = 8;
+    static final int ALL_CASTLING = 15;
+
+    // 一维数组棋盘（与 AI 中的棋子编码一致），用于按格子快速查询棋子
+    final int[] board = new int[64];
+    // 每种棋子一个位棋盘，下标为 棋子编码 + 6（与 Zobrist 表一致）
+    final long[] pieces = new long[13];
+    // 双方各自的占位以及全部占位
+    final long[] colors = new long[2];
+    long occupied;
+    // 当前局面的 Zobrist 哈希值，由 AI.makeMove/unmakeMove 增量维护
+    long hash;
+    // 只包含兵的 Zobrist 哈希值（兵型表的键），同样由 AI.makeMove/unmakeMove 增量维护
+    long pawnHash;
+    // 棋子摆放以外的局面状态，同样由 makeMove/unmakeMove 维护并计入哈希：
+    // 走子方、易位权（位标志）、可以吃过路兵时的目标格（没有为 -1）、距上次吃子或走兵的半回合数
+    boolean whiteToMove = true;
+    int castling;
+    int epSquare = -1;
+    int halfmoveClock;
+    // 走过的局面的哈希值：对局历史加上当前搜索路径，makeMove 压入走之前的哈希，unmakeMove 弹出
+    // 重复局面只可能出现在最近 halfmoveClock 步之内（吃子和走兵都不可逆），查找不会超出这个范围
+    // 栈在走子和撤销时从不收缩：对局历史只在设置根局面时（setHistory、copyFrom、trimHistory）截短到 MAX_ROOT_HISTORY 以内，
+    // 再留出一次搜索最多压入的 AI.MAX_PLY 个位置
+    private static final int MAX_ROOT_HISTORY = 256;
+    private static final int HISTORY_CAPACITY = MAX_ROOT_HISTORY + AI.MAX_PLY;
+    final long[] keyHistory = new long[HISTORY_CAPACITY];
+    int historySize;
+    // 子力分与位置分之和（以白方为正，中局、残局各一份）以及局面阶段，随 put/remove/move 增量维护
+    int mgScore, egScore, phase;
+
+    // 清空棋盘；走子方等状态重置为白方走、无易位权、无过路兵，由调用方按需设置
+    void clear() {
+        whiteToMove = true;
+        castling = 0;
+        epSquare = -1;
+        halfmoveClock = 0;
+        historySize = 0;
+        for (int i = 0; i < 13; i++) pieces[i] = 0L;
+        colors[WHITE] = colors[BLACK] = 0L;
+        occupied = 0L;
+        mgScore = egScore = phase = 0;
+        for (int sq = 0; sq < 64; sq++) board[sq] = 0;
+    }
+
+    // 从一维整型数组载入局面，其余状态与 clear 相同
+    void load(int[] mailbox) {
+        clear();
+        for (int sq = 0; sq < 64; sq++) {
+            if (mailbox[sq] != 0) put(sq, mailbox[sq]);
+        }
+    }
+
+    // 复制另一个局面（并行搜索时每个线程各持一份）
+    void copyFrom(Position other) {
+        System.arraycopy(other.board, 0, board, 0, 64);
+        System.arraycopy(other.pieces, 0, pieces, 0, 13);
+        System.arraycopy(other.colors, 0, colors, 0, 2);
+        occupied = other.occupied;
+        hash = other.hash;
+        pawnHash = other.pawnHash;
+        whiteToMove = other.whiteToMove;
+        castling = other.castling;
+        epSquare = other.epSquare;
+        halfmoveClock = other.halfmoveClock;
+        historySize = other.historySize;
+        System.arraycopy(other.keyHistory, 0, keyHistory, 0, historySize);
+        trimHistory();
+        mgScore = other.mgScore;
+        egScore = other.egScore;
+        phase = other.phase;
+    }
+
+    // 在空格子上放置棋子
+    void put(int sq, int piece) {
+        long b = 1L << sq;
+        board[sq] = piece;
+        pieces[piece + 6] |= b;
+        colors[piece > 0 ? WHITE : BLACK] |= b;
+        occupied |= b;
+        mgScore += AI.MG_PSQT[piece + 6][sq];
+        egScore += AI.EG_PSQT[piece + 6][sq];
+        phase += AI.PHASE_WEIGHTS[piece + 6];
+    }
+
+    // 移除格子上的棋子并返回它（格子为空时返回 0）
+    int remove(int sq) {
+        int piece = board[sq];
+        if (piece == 0) return 0;
+        long b = ~(1L << sq);
+        board[sq] = 0;
+        pieces[piece + 6] &= b;
+        colors[piece > 0 ? WHITE : BLACK] &= b;
+        occupied &= b;
+        mgScore -= AI.MG_PSQT[piece + 6][sq];
+        egScore -= AI.EG_PSQT[piece + 6][sq];
+        phase -= AI.PHASE_WEIGHTS[piece + 6];
+        return piece;
+    }
+
+    // 把棋子从 from 移到空格子 to
+    void move(int from, int to) {
+        int piece = board[from];
+        long fromTo = (1L << from) | (1L << to);
+        board[to] = piece;
+        board[from] = 0;
+        pieces[piece + 6] ^= fromTo;
+        colors[piece > 0 ? WHITE : BLACK] ^= fromTo;
+        occupied ^= fromTo;
+        mgScore += AI.MG_PSQT[piece + 6][to] - AI.MG_PSQT[piece + 6][from];
+        egScore += AI.EG_PSQT[piece + 6][to] - AI.EG_PSQT[piece + 6][from];
+    }
+
+    // 记录走之前的局面（撤销时原样弹出，所以这里不能截短）
+    void pushHistory() {
+        keyHistory[historySize++] = hash;
+    }
+
+    // 用对局历史（从早到晚的局面哈希，不含当前局面）初始化历史栈，只保留还可能构成重复的部分
+    // 调用前 halfmoveClock 必须已经设置好
+    void setHistory(long[] keys, int count) {
+        int keep = Math.min(count, rootHistoryLimit());
+        System.arraycopy(keys, count - keep, keyHistory, 0, keep);
+        historySize = keep;
+    }
+
+    // 在搜索之外逐步走棋（对局、UCI 的 position moves）时，每走一步调用一次，让历史栈保持在根局面的上限以内
+    void trimHistory() {
+        if (historySize <= MAX_ROOT_HISTORY) return;
+        int keep = Math.min(historySize, rootHistoryLimit());
+        System.arraycopy(keyHistory, historySize - keep, keyHistory, 0, keep);
+        historySize = keep;
+    }
+
+    // 根局面需要保留的历史长度：最近 halfmoveClock 个，再早的局面不可能重复
+    private int rootHistoryLimit() {
+        return Math.min(halfmoveClock, MAX_ROOT_HISTORY);
+    }
+
+    // 当前局面是否在最近的可逆走法中出现过（同一走子方，所以每隔两步比较一次）
+    // 搜索中重复一次就当作和棋：能重复一次的一方一定也能重复第二次
+    boolean isRepetition() {
+        int limit = Math.min(halfmoveClock, historySize);
+        for (int back = 4; back <= limit; back += 2) {
+            if (keyHistory[historySize - back] == hash) return true;
+        }
+        return false;
+    }
+
+    // 某一局面在整段历史中（含当前）出现的次数，用于对局中的三次重复判和
+    int repetitionCount() {
+        int count = 1;
+        int limit = Math.min(halfmoveClock, historySize);
+        for (int back = 4; back <= limit; back += 2) {
+            if (keyHistory[historySize - back] == hash) count++;
+        }
+        return count;
+    }
+
+    // 某方某类棋子的位棋盘，type 取正数（1 兵 ... 6 王）
+    long pieces(int type, boolean isWhite) {
+        return pieces[(isWhite ? type : -type) + 6];
+    }
+}
@@ -0,0 +1,66 @@
+// 搜索选择性（空着剪枝、后期走法削减）的可调参数，供基准测试和调参时修改
+// 每个 Engine 一份（Engine.params），改动只影响这个引擎；只应在它的搜索开始前修改，它的所有搜索线程共享同一套参数
+public class SearchParams {
+
+    private static final int TABLE_SIZE = 64;
+
+    // 安静走法的排序启发（杀手走法、反击走法、历史表）；关闭后安静走法按生成顺序搜索，只用于基准对比
+    boolean quietHeuristics = true;
+
+    // 空着剪枝：剩余深度至少 nullMoveMinDepth 时尝试，削减量 R = base + depth / divisor
+    boolean nullMoveEnabled = true;
+    int nullMoveMinDepth = 3;
+    int nullMoveBaseReduction = 2;
+    int nullMoveDepthDivisor = 4;
+
+    // 后期走法削减（LMR）：剩余深度至少 lmrMinDepth、且已经搜过 lmrMinMoves 个走法之后的安静走法
+    // 削减量查表得到：reduction[depth][moveNumber] = base + ln(depth) * ln(moveNumber) / divisor
+    boolean lmrEnabled = true;
+    int lmrMinDepth = 3;
+    int lmrMinMoves = 3;
+    private double lmrBase = 0.75;
+    private double lmrDivisor = 2.25;
+    private final int[][] lmrTable = new int[TABLE_SIZE][TABLE_SIZE];
+
+    // 浅层 SEE 剪枝：剩余深度不超过 seePruneDepth 时，交换结果低于 -margin * depth（厘兵）的走法直接跳过
+    boolean seePruningEnabled = true;
+    int seePruneDepth = 3;
+    int seeQuietMargin = 60;
+    int seeCaptureMargin = 100;
+
+    SearchParams() {
+        buildLmrTable();
+    }
+
+    // 重新设置 LMR 削减公式的两个系数并重建表
+    public synchronized void setLmr(double base, double divisor) {
+        lmrBase = base;
+        lmrDivisor = divisor;
+        buildLmrTable();
+    }
+
+    public void setNullMove(boolean enabled) { nullMoveEnabled = enabled; }
+
+    public void setLmrEnabled(boolean enabled) { lmrEnabled = enabled; }
+
+    public void setQuietHeuristics(boolean enabled) { quietHeuristics = enabled; }
+
+    public void setSeePruning(boolean enabled) { seePruningEnabled = enabled; }
+
+    private void buildLmrTable() {
+        for (int d = 1; d < TABLE_SIZE; d++) {
+            for (int m = 1; m < TABLE_SIZE; m++) {
+                lmrTable[d][m] = Math.max(0, (int) (lmrBase + Math.log(d) * Math.log(m) / lmrDivisor));
+            }
+        }
+    }
+
+    int nullMoveReduction(int depth) {
+        return nullMoveBaseReduction + depth / nullMoveDepthDivisor;
+    }
+
+    // 第 moveNumber 个走法（从 1 开始）在剩余深度 depth 时的削减层数
+    int lmrReduction(int depth, int moveNumber) {
+        return lmrTable[Math.min(depth, TABLE_SIZE - 1)][Math.min(moveNumber, TABLE_SIZE - 1)];
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// 异步搜索任务：在专用的后台线程上运行 AI 搜索，渲染线程只负责提交、查询进度和取消
+public class SearchTask {
+
+    private final Engine engine;
+    private final CompletableFuture<GameBoard.Move> future;
+    private volatile boolean running = false;
+    private volatile boolean cancelled = false;
+    private volatile long startNanos = 0;
+
+    private SearchTask(Engine engine, Position position, float timeLeft, float increment) {
+        this.engine = engine;
+        // 任务在引擎自己的单线程执行器上排队：不同对局的搜索可以同时进行，同一个引擎的任务依次执行，
+        // 所以这里清除停止标志时，前一个任务（包括刚被取消的那个）一定已经结束，不会抹掉它的停止请求
+        this.future = CompletableFuture.supplyAsync(() -> {
+            // 先清除上一次的停止请求再标记为运行中，这样之后的 cancel 一定能被搜索看到
+            engine.clearStop();
+            startNanos = System.nanoTime();
+            running = true;
+            try {
+                if (cancelled) return null;
+                return AI.getBestMove(engine, position, timeLeft, increment);
+            } finally {
+                running = false;
+            }
+        }, engine.asyncExecutor());
+    }
+
+    // 提交一次搜索；position 必须是调用方之后不会再修改的快照
+    public static SearchTask submit(Engine engine, Position position, float timeLeft, float increment) {
+        return new SearchTask(engine, position, timeLeft, increment);
+    }
+
+    // 注册完成回调：在后台线程上调用，被取消的任务不会回调
+    public SearchTask whenDone(Consumer<GameBoard.Move> callback) {
+        future.thenAccept(move -> {
+            if (!cancelled) callback.accept(move);
+        });
+        return this;
+    }
+
+    public CompletableFuture<GameBoard.Move> future() {
+        return future;
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // 取消搜索：尚未开始的直接跳过，正在进行的通知 AI 尽快停下
+    public void cancel() {
+        cancelled = true;
+        if (running) engine.requestStop();
+        future.cancel(false);
+    }
+
+    // 以下为进度查询，只在搜索进行中有意义
+    public int completedDepth() {
+        return running ? engine.getCompletedDepth() : 0;
+    }
+
+    public long nodes() {
+        return running ? engine.getProgressNodes() : 0;
+    }
+
+    public long elapsedMs() {
+        return startNanos == 0 ? 0 : (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+}
@@ -0,0 +1,467 @@
+// 单个搜索线程的全部可变状态：自己的棋盘副本、走法缓冲区、节点计数和中断标志
+// 多个 Searcher 共享同一个置换表，这就是 Lazy SMP：大家从同一个根局面出发各自搜索，
+// 通过置换表互相借用结果
+public class Searcher {
+
+    // 每搜索这么多节点检查一次时间
+    private static final int TIME_CHECK_INTERVAL = 2048;
+    // Delta 剪枝的安全余量（约两个兵），留给位置分的变化
+    private static final int DELTA_MARGIN = 200 * AI.EVAL_SCALE;
+    // 比任何分值（包括杀棋分）都大的边界
+    private static final int INFINITY = AI.MATE_VALUE + 1000;
+    // 期望窗口的初始半宽（四分之一个兵）以及从第几层开始使用
+    private static final int ASPIRATION_WINDOW = 25 * AI.EVAL_SCALE;
+    private static final int ASPIRATION_MIN_DEPTH = 4;
+    // 历史分的上限：更新按"重力"公式逼近上限，分值不会溢出，旧的经验也会被新的逐渐冲淡
+    private static final int HISTORY_MAX = 1 << 14;
+    // 每个节点最多记录多少个失败的安静走法用于扣历史分
+    private static final int MAX_QUIETS_TRIED = 64;
+    // 和棋的分值（双方都是 0）
+    private static final int DRAW_SCORE = 0;
+    // 关闭安静走法启发时传给走法选择器的全零历史表
+    private static final int[] NO_HISTORY = new int[4096];
+
+    private final Engine engine; // 所属的引擎，停止请求由它发出
+    private final TranspositionTable tt;
+    private final SearchParams params; // 所属引擎的剪枝参数
+    private final boolean isMain; // 主线程负责计时，辅助线程只等待主线程通知停止
+    final Position pos = new Position();
+    // 每个线程一张兵型表，跨搜索保留（兵型分只取决于兵的位置，不会过时）
+    final PawnTable pawnTable = new PawnTable(PawnTable.DEFAULT_ENTRIES);
+    // 静态估值缓存，同样每个线程一张
+    final EvalCache evalCache = new EvalCache(EvalCache.DEFAULT_ENTRIES);
+
+    // 每一层搜索预先分配一个走法选择器，搜索中反复复用，稳定状态下不产生任何垃圾对象
+    private final MovePicker[] pickers = new MovePicker[AI.MAX_PLY];
+    // 安静走法的排序启发，全部是基本类型数组，搜索中不分配内存：
+    // 杀手走法（每层两个，最近引起剪枝的安静走法）、历史表（双方各一张，按 起点*64+终点 索引）、
+    // 反击走法表（按对方上一步的 起点*64+终点 索引，记录曾经驳倒它的安静走法）
+    private final int[][] killers = new int[AI.MAX_PLY][2];
+    private final int[][] history = new int[2][4096];
+    private final int[][] counterMoves = new int[2][4096];
+    // 每一层走的走法（空着记为 0），以及每层已经试过但没有剪枝的安静走法
+    private final int[] moveStack = new int[AI.MAX_PLY];
+    private final int[][] quietsTried = new int[AI.MAX_PLY][MAX_QUIETS_TRIED];
+    // 五十回合判和前确认没有被将死时使用的走法缓冲区
+    private final AI.IntList ruleMoves = new AI.IntList();
+    // 为 true 时退回旧的冒泡排序，只用于基准对比
+    boolean legacyOrdering = false;
+
+    // 本次搜索的计时器与中断标志；上一轮完整迭代的最佳走法用于下一轮优先搜索
+    private TimeManager timer = TimeManager.infinite();
+    private boolean stopped = false;
+    private int rootBestMove = 0;
+    private int iterationBestMove = 0;
+    private int rootLegalMoves = 0;
+    // 主线程的节点数上限（0 表示不限），UCI 的 go nodes 使用
+    long nodeLimit = 0;
+    long nodeCount = 0;
+    // 其中属于静态搜索的节点数
+    long qNodeCount = 0;
+    // 置换表探测次数与命中次数
+    long ttProbes = 0;
+    long ttHits = 0;
+    // 置换表写入次数，以及其中挤掉别的局面的次数
+    long ttStores = 0;
+    long ttOverwrites = 0;
+    // Beta 剪枝总次数，其中由置换表走法产生的次数，以及第一个合法走法就剪枝的次数（衡量走法排序质量）
+    long cutoffs = 0;
+    long hashMoveCutoffs = 0;
+    long firstMoveCutoffs = 0;
+
+    // 供其他线程读取的搜索进度，以及主线程发给辅助线程的停止信号
+    volatile boolean abort = false;
+    volatile int completedDepth = 0;
+    // 最后一轮完整迭代的分数（从根局面走子方的角度）
+    volatile int completedScore = 0;
+    volatile long progressNodes = 0;
+
+    Searcher(Engine engine, boolean isMain) {
+        this.engine = engine;
+        this.tt = engine.tt;
+        this.params = engine.params;
+        this.isMain = isMain;
+        for (int i = 0; i < AI.MAX_PLY; i++) pickers[i] = new MovePicker();
+    }
+
+    // 迭代加深：从 startDepth 开始逐层加深，直到达到最大深度或被要求停止
+    // 只采用完整搜索完毕的那一轮的结果，被打断的一轮直接丢弃
+    int iterate(int startDepth, int maxDepth, TimeManager tm) {
+        timer = tm;
+        stopped = false;
+        abort = false;
+        rootBestMove = 0;
+        nodeCount = 0;
+        qNodeCount = 0;
+        ttProbes = 0;
+        ttHits = 0;
+        ttStores = 0;
+        ttOverwrites = 0;
+        pawnTable.probes = 0;
+        pawnTable.hits = 0;
+        evalCache.probes = 0;
+        evalCache.hits = 0;
+        cutoffs = 0;
+        hashMoveCutoffs = 0;
+        firstMoveCutoffs = 0;
+        completedDepth = 0;
+        completedScore = 0;
+        progressNodes = 0;
+        // 杀手走法与层数挂钩，换了根局面就没有意义；历史分减半保留，反击走法表原样保留
+        for (int[] k : killers) k[0] = k[1] = 0;
+        for (int[] h : history) {
+            for (int i = 0; i < h.length; i++) h[i] /= 2;
+        }
+
+        for (int depth = startDepth; depth <= maxDepth; depth++) {
+            int score = aspirationSearch(depth);
+            if (stopped) break;
+            rootBestMove = iterationBestMove;
+            completedScore = score;
+            completedDepth = depth;
+            progressNodes = nodeCount;
+            if (isMain) engine.iterationDone(depth, score, rootBestMove);
+            // 没有棋可走或只有唯一应着时，不必继续加深
+            if (rootLegalMoves <= 1 || (isMain && (tm.softExpired() || nodeLimitReached()))) break;
+        }
+        progressNodes = nodeCount;
+        return rootBestMove;
+    }
+
+    // 定期检查是否超过硬限制或被要求停止；主线程的第一轮迭代必须完成，保证总有走法可用
+    private boolean checkTime() {
+        if (!stopped && (nodeCount % TIME_CHECK_INTERVAL) == 0) {
+            progressNodes = nodeCount;
+            if (abort || engine.isStopRequested()
+                    || (isMain && rootBestMove != 0 && (timer.hardExpired() || nodeLimitReached()))) stopped = true;
+        }
+        return stopped;
+    }
+
+    private boolean nodeLimitReached() {
+        return nodeLimit > 0 && nodeCount >= nodeLimit;
+    }
+
+    // 期望窗口：以上一轮的分数为中心用窄窗口搜索，落在窗口外就向失败的一侧加倍放宽后重搜
+    private int aspirationSearch(int depth) {
+        int alpha = -INFINITY, beta = INFINITY;
+        int delta = ASPIRATION_WINDOW;
+        if (depth >= ASPIRATION_MIN_DEPTH && Math.abs(completedScore) < AI.MATE_VALUE - AI.MAX_PLY) {
+            alpha = Math.max(completedScore - delta, -INFINITY);
+            beta = Math.min(completedScore + delta, INFINITY);
+        }
+        while (true) {
+            int score = searchRoot(depth, alpha, beta);
+            if (stopped) return score;
+            if (score <= alpha && alpha > -INFINITY) {
+                alpha = Math.max(score - delta, -INFINITY);
+            } else if (score >= beta && beta < INFINITY) {
+                beta = Math.min(score + delta, INFINITY);
+            } else {
+                return score;
+            }
+            delta *= 2;
+        }
+    }
+
+    // AI搜索的第一层逻辑（为根局面的走子方搜索）：第一个走法用完整窗口，其余走法先用零窗口试探，
+    // 试探结果落在窗口内再重搜；alpha 随着每个更好的走法收紧，后面的走法因此可以被剪枝
+    private int searchRoot(int depth, int alpha, int beta) {
+        int bestVal = -INFINITY;
+        int bestMove = 0;
+        rootLegalMoves = 0;
+        boolean us = pos.whiteToMove;
+
+        // 上一轮的最佳走法最先搜索
+        MovePicker picker = pickers[0];
+        picker.init(pos, us, rootBestMove, 0, 0, 0, historyFor(us ? Position.WHITE : Position.BLACK), legacyOrdering);
+        int move;
+        while ((move = picker.next()) != 0) {
+            long undoInfo = AI.makeMove(pos, move);
+
+            // 走完后检查自己的王是否在对方火力下，不能送王
+            if (AI.isSquareAttacked(pos, AI.findKing(pos, us), !us)) {
+                AI.unmakeMove(pos, move, undoInfo);
+                continue;
+            }
+
+            rootLegalMoves++;
+            moveStack[0] = move;
+
+            int val;
+            if (rootLegalMoves == 1) {
+                val = -search(depth - 1, -beta, -alpha, !us, 1, true);
+            } else {
+                val = -search(depth - 1, -alpha - 1, -alpha, !us, 1, true);
+                if (val > alpha && val < beta) val = -search(depth - 1, -beta, -alpha, !us, 1, true);
+            }
+
+            AI.unmakeMove(pos, move, undoInfo);
+            if (stopped) return 0;
+
+            if (val > bestVal) {
+                bestVal = val;
+                bestMove = move;
+                if (val > alpha) {
+                    alpha = val;
+                    if (alpha >= beta) break;
+                }
+            }
+        }
+        iterationBestMove = bestMove;
+        // 根局面无棋可走：被将军是已经被将死（距离 0 步），否则是逼和
+        if (rootLegalMoves == 0) return AI.isSquareAttacked(pos, AI.findKing(pos, us), !us) ? -AI.MATE_VALUE : DRAW_SCORE;
+        return bestVal;
+    }
+
+    // Negamax 形式的主要变例搜索（PVS）：分值总是从当前走子方的角度计算
+    // 第一个走法用完整窗口，其余走法先用零窗口证明它们不比已知最好的更好，证明失败才重搜
+    // allowNull 为 false 表示上一步就是空着，不能连续走空着
+    private int search(int depth, int alpha, int beta, boolean isWhite, int ply, boolean allowNull) {
+        // 重复局面和五十回合规则直接判和；必须在转入静态搜索之前判断，否则走回原局面的安静走法会被当成普通叶子估值
+        // 第 100 个半回合正好将死时杀棋优先（与 GameBoard、Game 的判定顺序一致）
+        if (pos.isRepetition()) return DRAW_SCORE;
+        if (pos.halfmoveClock >= 100) return isCheckmate(isWhite) ? -AI.MATE_VALUE + ply : DRAW_SCORE;
+
+        // 搜索到底部，转入静态搜索把吃子交换走完再估值
+        if (depth <= 0) return quiesce(alpha, beta, isWhite, ply);
+
+        nodeCount++;
+        if (checkTime()) return 0;
+        if (ply >= AI.MAX_PLY - 1) return evaluate(isWhite);
+        boolean pvNode = beta - alpha > 1;
+
+        // 首先尝试从置换表中读取结果；主要变例上的节点不直接截断，保证变例完整
+        ttProbes++;
+        long entry = tt.probe(pos.hash);
+        int hashMove = 0;
+        if (entry != 0) {
+            ttHits++;
+            if (!pvNode) {
+                int score = TranspositionTable.cutoffScore(entry, depth, alpha, beta, ply, AI.MATE_VALUE);
+                if (score != TranspositionTable.MISS) {
+                    return score;
+                }
+            }
+            hashMove = TranspositionTable.move(entry);
+        }
+
+        int alphaOriginal = alpha;
+        boolean inCheck = AI.isSquareAttacked(pos, AI.findKing(pos, isWhite), !isWhite);
+
+        // 空着剪枝：让对方连走两步，用削减后的深度搜索，局面仍然不低于 beta 就认为这里足够好，直接剪掉
+        // 被将军时不能空着；只剩兵的残局常有"谁走谁亏"的局面，空着的假设不成立，也不做
+        if (params.nullMoveEnabled && allowNull && !pvNode && !inCheck
+                && depth >= params.nullMoveMinDepth && AI.hasNonPawnMaterial(pos, isWhite)
+                && evaluate(isWhite) >= beta) {
+            int r = params.nullMoveReduction(depth);
+            moveStack[ply] = 0;
+            int nullUndo = AI.makeNullMove(pos);
+            int val = -search(depth - 1 - r, -beta, -beta + 1, !isWhite, ply + 1, false);
+            AI.unmakeNullMove(pos, nullUndo);
+            if (stopped) return 0;
+            // 空着证明不了杀棋，杀棋分只当作 beta
+            if (val >= beta) return val > AI.MATE_VALUE - AI.MAX_PLY ? beta : val;
+        }
+
+        // 分阶段生成：置换表走法校验通过后最先搜索，它引起剪枝时就完全不必生成其余走法
+        if (hashMove != 0 && !AI.isPseudoLegal(pos, hashMove, isWhite)) hashMove = 0;
+        int side = isWhite ? Position.WHITE : Position.BLACK;
+        int[] killer = killers[ply];
+        int prevMove = moveStack[ply - 1];
+        MovePicker picker = pickers[ply];
+        if (params.quietHeuristics) {
+            picker.init(pos, isWhite, hashMove, killer[0], killer[1], counterMoves[side][prevMove & 0xFFF],
+                    history[side], legacyOrdering);
+        } else {
+            picker.init(pos, isWhite, hashMove, 0, 0, 0, NO_HISTORY, legacyOrdering);
+        }
+        int legalMovesCount = 0;
+        int quietCount = 0;
+
+        int bestVal = -INFINITY;
+        int bestMove = 0;
+
+        int move;
+        while ((move = picker.next()) != 0) {
+            boolean quiet = AI.isQuiet(pos, move);
+
+            // 浅层 SEE 剪枝：已经有了正常的走法之后，把子白白送掉的走法不再搜索
+            if (params.seePruningEnabled && !pvNode && !inCheck && depth <= params.seePruneDepth
+                    && bestVal > -AI.MATE_VALUE + AI.MAX_PLY && move != hashMove
+                    && !See.seeGe(pos, move, -(quiet ? params.seeQuietMargin : params.seeCaptureMargin) * depth)) {
+                continue;
+            }
+
+            long undoInfo = AI.makeMove(pos, move);
+
+            // 排除导致己方王被攻击的非法招法
+            if (AI.isSquareAttacked(pos, AI.findKing(pos, isWhite), !isWhite)) {
+                AI.unmakeMove(pos, move, undoInfo);
+                continue;
+            }
+            legalMovesCount++;
+            moveStack[ply] = move;
+
+            int val;
+            if (legalMovesCount == 1) {
+                val = -search(depth - 1, -beta, -alpha, !isWhite, ply + 1, true);
+            } else {
+                // 后期走法削减：排在后面的安静走法多半不好，先用较浅的深度试探；
+                // 被将军、将军对方的走法以及杀手走法不削减
+                int reduction = 0;
+                if (params.lmrEnabled && quiet && !inCheck && depth >= params.lmrMinDepth
+                        && legalMovesCount > params.lmrMinMoves && move != killer[0] && move != killer[1]
+                        && !AI.isSquareAttacked(pos, AI.findKing(pos, !isWhite), isWhite)) {
+                    reduction = Math.min(params.lmrReduction(depth, legalMovesCount), depth - 2);
+                }
+                val = -search(depth - 1 - reduction, -alpha - 1, -alpha, !isWhite, ply + 1, true);
+                // 削减后的试探超过了 alpha，结果不可信，按完整深度重新验证
+                if (reduction > 0 && val > alpha) val = -search(depth - 1, -alpha - 1, -alpha, !isWhite, ply + 1, true);
+                if (val > alpha && val < beta) val = -search(depth - 1, -beta, -alpha, !isWhite, ply + 1, true);
+            }
+
+            AI.unmakeMove(pos, move, undoInfo);
+            // 时间到了：结果不完整，不能写入置换表
+            if (stopped) return 0;
+
+            if (val > bestVal) {
+                bestVal = val;
+                bestMove = move;
+                if (val > alpha) {
+                    alpha = val;
+                    // Beta 剪枝
+                    if (alpha >= beta) {
+                        cutoffs++;
+                        if (move == hashMove) hashMoveCutoffs++;
+                        if (legalMovesCount == 1) firstMoveCutoffs++;
+                        if (quiet) updateQuietHeuristics(side, ply, depth, move, prevMove, quietCount);
+                        break;
+                    }
+                }
+            }
+            if (quiet && quietCount < MAX_QUIETS_TRIED) quietsTried[ply][quietCount++] = move;
+        }
+
+        // 处理特殊结尾：将军死或和棋
+        if (legalMovesCount == 0) {
+            if (inCheck) {
+                // 被将死的分数要考虑步数，鼓励尽早杀棋、尽量拖延被杀
+                return -AI.MATE_VALUE + ply;
+            } else {
+                return 0; // 逼和
+            }
+        }
+
+        // 将搜索结果记录到置换表
+        int flag;
+        if (bestVal >= beta) {
+            flag = TranspositionTable.LOWER; // 下界
+        } else if (bestVal > alphaOriginal) {
+            flag = TranspositionTable.EXACT; // 精确值
+        } else {
+            flag = TranspositionTable.UPPER; // 上界
+        }
+        ttStores++;
+        if (tt.store(pos.hash, depth, TranspositionTable.scoreToTT(bestVal, ply, AI.MATE_VALUE), flag, bestMove)) {
+            ttOverwrites++;
+        }
+
+        return bestVal;
+    }
+
+    // 静态搜索：只走吃子和升变，直到局面"安静"下来再估值，避免在搜索边界上漏看对方的吃回
+    // 不被将军时可以"按兵不动"（stand-pat），以静态估值作为下限；被将军时必须搜索全部应将走法
+    private int quiesce(int alpha, int beta, boolean isWhite, int ply) {
+        nodeCount++;
+        qNodeCount++;
+        if (checkTime()) return 0;
+
+        int standPat = evaluate(isWhite);
+        if (ply >= AI.MAX_PLY - 1) return standPat;
+
+        boolean inCheck = AI.isSquareAttacked(pos, AI.findKing(pos, isWhite), !isWhite);
+        int bestVal;
+        if (inCheck) {
+            bestVal = -AI.MATE_VALUE + ply;
+        } else {
+            bestVal = standPat;
+            if (standPat >= beta) return standPat;
+            if (standPat > alpha) alpha = standPat;
+        }
+
+        int side = isWhite ? Position.WHITE : Position.BLACK;
+        MovePicker picker = pickers[ply];
+        if (inCheck) picker.init(pos, isWhite, 0, 0, 0, 0, historyFor(side), false);
+        else picker.initCaptures(pos, isWhite);
+
+        int move;
+        while ((move = picker.next()) != 0) {
+            // Delta 剪枝：即使吃到这个子再加上余量也追不上 alpha，就不必再试
+            if (!inCheck && standPat + AI.captureGain(pos, move) + DELTA_MARGIN <= alpha) continue;
+
+            long undoInfo = AI.makeMove(pos, move);
+            if (AI.isSquareAttacked(pos, AI.findKing(pos, isWhite), !isWhite)) {
+                AI.unmakeMove(pos, move, undoInfo);
+                continue;
+            }
+            int val = -quiesce(-beta, -alpha, !isWhite, ply + 1);
+            AI.unmakeMove(pos, move, undoInfo);
+            if (stopped) return 0;
+
+            if (val > bestVal) {
+                bestVal = val;
+                if (val > alpha) {
+                    alpha = val;
+                    if (alpha >= beta) break;
+                }
+            }
+        }
+        return bestVal;
+    }
+
+    // 安静走法引起 beta 剪枝：记为本层的杀手走法和对方上一步的反击走法，
+    // 按深度平方加历史分，同一节点先试过却没能剪枝的安静走法扣同样的分
+    private void updateQuietHeuristics(int side, int ply, int depth, int move, int prevMove, int quietCount) {
+        int[] killer = killers[ply];
+        if (killer[0] != move) {
+            killer[1] = killer[0];
+            killer[0] = move;
+        }
+        if (prevMove != 0) counterMoves[side][prevMove & 0xFFF] = move;
+
+        int[] h = history[side];
+        int bonus = Math.min(depth * depth, HISTORY_MAX / 16);
+        updateHistory(h, move & 0xFFF, bonus);
+        int[] tried = quietsTried[ply];
+        for (int i = 0; i < quietCount; i++) updateHistory(h, tried[i] & 0xFFF, -bonus);
+    }
+
+    private static void updateHistory(int[] h, int idx, int bonus) {
+        h[idx] += bonus - h[idx] * Math.abs(bonus) / HISTORY_MAX;
+    }
+
+    // 走子方被将军且没有任何合法走法
+    private boolean isCheckmate(boolean isWhite) {
+        if (!AI.isSquareAttacked(pos, AI.findKing(pos, isWhite), !isWhite)) return false;
+        AI.generateMoves(pos, isWhite, ruleMoves);
+        for (int i = 0; i < ruleMoves.size; i++) {
+            int move = ruleMoves.data[i];
+            long undoInfo = AI.makeMove(pos, move);
+            boolean legal = !AI.isSquareAttacked(pos, AI.findKing(pos, isWhite), !isWhite);
+            AI.unmakeMove(pos, move, undoInfo);
+            if (legal) return false;
+        }
+        return true;
+    }
+
+    private int[] historyFor(int side) {
+        return params.quietHeuristics ? history[side] : NO_HISTORY;
+    }
+
+    // 从走子方角度看的静态估值（evaluateBoard 以白方为正），先查估值缓存
+    private int evaluate(boolean isWhite) {
+        int eval = evalCache.evaluate(pos, pawnTable);
+        return isWhite ? eval : -eval;
+    }
+}
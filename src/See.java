@@ -0,0 +1,151 @@
+// 静态交换评估（Static Exchange Evaluation）：只考虑落点格上的连续互吃，双方每次都用最便宜的棋子去吃，
+// 且任何一方都可以在对自己不利时停手，算出这步棋最终的子力得失（单位：厘兵，一个兵 = 100）
+// 每吃掉一个子就把它从占位中拿掉，重新查询滑动棋子的攻击，这样排在后面的车、象、后（X 光攻击者）也会被算进来
+public class See {
+
+    private static final int W_PAWN = 1, W_KNIGHT = 2, W_BISHOP = 3, W_ROOK = 4, W_QUEEN = 5, W_KING = 6;
+
+    // 互吃的最大回合数：一个格子最多被 16 个棋子攻击，再留一些余量
+    private static final int MAX_EXCHANGES = 32;
+
+    // 走法的交换结果（厘兵）；需要分配一个临时数组，搜索热路径上请使用 seeGe
+    static int see(Position pos, int move) {
+        int from = (move >> 6) & 0x3F;
+        int to = move & 0x3F;
+        int piece = pos.board[from];
+        if (isCastling(piece, from, to)) return 0;
+        boolean white = piece > 0;
+
+        int[] gain = new int[MAX_EXCHANGES];
+        long occ = pos.occupied ^ (1L << from);
+        gain[0] = capturedValue(pos, from, to, piece);
+        if (isEnPassant(pos, piece, from, to)) occ ^= 1L << (to + (white ? -8 : 8));
+        int nextVictim = isPromotion(piece, to) ? AI.PIECE_VALUES[W_QUEEN] : AI.PIECE_VALUES[Math.abs(piece)];
+        long attackers = attackersTo(pos, to, occ);
+
+        int d = 0;
+        boolean side = !white;
+        while (d < MAX_EXCHANGES - 1) {
+            attackers &= occ;
+            long own = attackers & pos.colors[side ? Position.WHITE : Position.BLACK];
+            if (own == 0) break;
+            int type = leastValuableType(pos, own, side);
+            long bit = Long.lowestOneBit(own & pos.pieces(type, side));
+
+            // 王只能在对方已经没有攻击者时去吃
+            if (type == W_KING && (attackers & pos.colors[side ? Position.BLACK : Position.WHITE]) != 0) break;
+
+            // gain[d]：第 d 次吃子的一方吃完就停手时，从它的角度看的累计得失
+            d++;
+            gain[d] = nextVictim - gain[d - 1];
+
+            occ ^= bit;
+            attackers |= xrays(pos, to, occ, type);
+            nextVictim = AI.PIECE_VALUES[type];
+            side = !side;
+        }
+        // 从最后一次互吃往回推：每一方都可以选择在对自己更有利的时候停手
+        while (d > 0) {
+            gain[d - 1] = -Math.max(-gain[d - 1], gain[d]);
+            d--;
+        }
+        return gain[0];
+    }
+
+    // 走法的交换结果是否不低于 threshold；不分配内存，用于走法排序和剪枝
+    static boolean seeGe(Position pos, int move, int threshold) {
+        int from = (move >> 6) & 0x3F;
+        int to = move & 0x3F;
+        int piece = pos.board[from];
+        if (isCastling(piece, from, to)) return threshold <= 0;
+        boolean white = piece > 0;
+
+        // 先吃到的子减去门槛：连这都不够，对方根本不用吃回
+        int swap = capturedValue(pos, from, to, piece) - threshold;
+        if (swap < 0) return false;
+        // 就算走过去的子被白白吃掉也够门槛
+        int moved = isPromotion(piece, to) ? AI.PIECE_VALUES[W_QUEEN] : AI.PIECE_VALUES[Math.abs(piece)];
+        swap = moved - swap;
+        if (swap <= 0) return true;
+
+        long occ = pos.occupied ^ (1L << from) ^ (1L << to);
+        if (isEnPassant(pos, piece, from, to)) occ ^= 1L << (to + (white ? -8 : 8));
+        long attackers = attackersTo(pos, to, occ);
+
+        // result 表示"到目前为止，走这步棋的一方是否达到门槛"，每多一次互吃就翻转一次
+        boolean side = white;
+        boolean result = true;
+        while (true) {
+            side = !side;
+            attackers &= occ;
+            long own = attackers & pos.colors[side ? Position.WHITE : Position.BLACK];
+            if (own == 0) break;
+            result = !result;
+
+            int type = leastValuableType(pos, own, side);
+            if (type == W_KING) {
+                // 王去吃，只有对方再也没有攻击者时才合法
+                if ((attackers & pos.colors[side ? Position.BLACK : Position.WHITE]) != 0) result = !result;
+                break;
+            }
+            swap = AI.PIECE_VALUES[type] - swap;
+            if (swap < (result ? 1 : 0)) break;
+
+            occ ^= Long.lowestOneBit(own & pos.pieces(type, side));
+            attackers |= xrays(pos, to, occ, type);
+        }
+        return result;
+    }
+
+    // 所有攻击 sq 的棋子（双方），occ 为假定的占位
+    private static long attackersTo(Position pos, int sq, long occ) {
+        long rookLike = pos.pieces[W_ROOK + 6] | pos.pieces[-W_ROOK + 6] | pos.pieces[W_QUEEN + 6] | pos.pieces[-W_QUEEN + 6];
+        long bishopLike = pos.pieces[W_BISHOP + 6] | pos.pieces[-W_BISHOP + 6] | pos.pieces[W_QUEEN + 6] | pos.pieces[-W_QUEEN + 6];
+        return (Bitboards.PAWN_ATTACKS[Position.BLACK][sq] & pos.pieces[W_PAWN + 6])
+                | (Bitboards.PAWN_ATTACKS[Position.WHITE][sq] & pos.pieces[-W_PAWN + 6])
+                | (Bitboards.KNIGHT_ATTACKS[sq] & (pos.pieces[W_KNIGHT + 6] | pos.pieces[-W_KNIGHT + 6]))
+                | (Bitboards.KING_ATTACKS[sq] & (pos.pieces[W_KING + 6] | pos.pieces[-W_KING + 6]))
+                | (Bitboards.rookAttacks(sq, occ) & rookLike)
+                | (Bitboards.bishopAttacks(sq, occ) & bishopLike);
+    }
+
+    // 某类棋子离开后，可能从它身后露出来的滑动攻击者
+    private static long xrays(Position pos, int sq, long occ, int type) {
+        long queens = pos.pieces[W_QUEEN + 6] | pos.pieces[-W_QUEEN + 6];
+        long result = 0L;
+        if (type == W_PAWN || type == W_BISHOP || type == W_QUEEN) {
+            result |= Bitboards.bishopAttacks(sq, occ) & (pos.pieces[W_BISHOP + 6] | pos.pieces[-W_BISHOP + 6] | queens);
+        }
+        if (type == W_ROOK || type == W_QUEEN) {
+            result |= Bitboards.rookAttacks(sq, occ) & (pos.pieces[W_ROOK + 6] | pos.pieces[-W_ROOK + 6] | queens);
+        }
+        return result;
+    }
+
+    private static int leastValuableType(Position pos, long attackers, boolean white) {
+        for (int type = W_PAWN; type < W_KING; type++) {
+            if ((attackers & pos.pieces(type, white)) != 0) return type;
+        }
+        return W_KING;
+    }
+
+    // 这步棋直接吃到的价值，升变另加后与兵的差价
+    private static int capturedValue(Position pos, int from, int to, int piece) {
+        int value = AI.PIECE_VALUES[Math.abs(pos.board[to])];
+        if (isEnPassant(pos, piece, from, to)) value = AI.PIECE_VALUES[W_PAWN];
+        if (isPromotion(piece, to)) value += AI.PIECE_VALUES[W_QUEEN] - AI.PIECE_VALUES[W_PAWN];
+        return value;
+    }
+
+    private static boolean isEnPassant(Position pos, int piece, int from, int to) {
+        return Math.abs(piece) == W_PAWN && (from & 7) != (to & 7) && pos.board[to] == 0;
+    }
+
+    private static boolean isPromotion(int piece, int to) {
+        return Math.abs(piece) == W_PAWN && (to < 8 || to >= 56);
+    }
+
+    private static boolean isCastling(int piece, int from, int to) {
+        return Math.abs(piece) == W_KING && Math.abs(from - to) == 2;
+    }
+}
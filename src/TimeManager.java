@@ -0,0 +1,52 @@
+public class TimeManager {
+
+    // 假设本局还要再走的步数，用来把剩余时间平均分配到每一步
+    private static final int MOVES_TO_GO = 40;
+    // 留给界面刷新和走子动画的安全余量
+    private static final long SAFETY_MARGIN_MS = 50;
+
+    private final long startNanos;
+    private final long softLimitNanos; // 软限制：超过后不再开始新一轮迭代
+    private final long hardLimitNanos; // 硬限制：超过后立即中断正在进行的搜索
+
+    private TimeManager(long softMs, long hardMs) {
+        this.startNanos = System.nanoTime();
+        this.softLimitNanos = softMs * 1_000_000L;
+        this.hardLimitNanos = hardMs * 1_000_000L;
+    }
+
+    // 根据费舍尔计时的剩余时间和每步加秒计算本步的思考时间（单位：毫秒）
+    // 软限制取计划用时的一半：下一轮迭代通常比之前所有轮加起来还久，过半就不再开新一轮
+    public static TimeManager forClock(long remainingMs, long incrementMs) {
+        long usable = Math.max(0, remainingMs - SAFETY_MARGIN_MS);
+        long optimum = Math.min(usable / MOVES_TO_GO + incrementMs * 3 / 4, usable);
+        long hard = Math.min(Math.min(optimum * 2, usable / 4 + incrementMs), usable);
+        return new TimeManager(optimum / 2, Math.max(optimum / 2, hard));
+    }
+
+    // 固定思考时间（软硬限制相同）
+    public static TimeManager fixed(long moveTimeMs) {
+        return new TimeManager(moveTimeMs, moveTimeMs);
+    }
+
+    // 不限时，只由最大深度控制搜索结束（共享同一个实例，固定深度搜索不产生额外对象）
+    private static final TimeManager INFINITE = new TimeManager(Long.MAX_VALUE / 2_000_000L, Long.MAX_VALUE / 2_000_000L);
+
+    public static TimeManager infinite() {
+        return INFINITE;
+    }
+
+    public long elapsedMs() {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    // 一轮迭代结束后调用：是否还值得开始下一轮
+    public boolean softExpired() {
+        return System.nanoTime() - startNanos >= softLimitNanos;
+    }
+
+    // 搜索过程中定期调用：是否必须马上停止
+    public boolean hardExpired() {
+        return System.nanoTime() - startNanos >= hardLimitNanos;
+    }
+}
@@ -0,0 +1,141 @@
+import java.util.Arrays;
+
+// 置换表（Transposition Table），用于存储已搜索过的盘面，可被多个搜索线程同时读写
+// 无锁设计：每个条目由 key 和 data 两个 long 组成，写入时存 hash ^ data，
+// 读取时再异或一次校验。两个线程交叉写坏的条目校验不通过，当作未命中处理，不需要加锁
+// 每 4 个条目组成一个桶（8 个 long = 64 字节，正好一条缓存行），一次探测只会产生一次缓存未命中
+public final class TranspositionTable {
+
+    // 分值类型：1代表精确值，2代表下界，3代表上界
+    static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+    // 分值不可用时的返回值
+    static final int MISS = Integer.MIN_VALUE;
+
+    private static final int BUCKET_SLOTS = 4;
+    private static final int BUCKET_LONGS = BUCKET_SLOTS * 2;
+    private static final int BUCKET_BYTES = BUCKET_LONGS * 8;
+    private static final int AGE_MASK = 0x3F;
+
+    private long[] table;
+    private int bucketMask;
+    // 当前搜索的代数（0~63 循环），每开始一次新的搜索加一，用于淘汰旧对局留下的条目
+    private volatile int generation = 0;
+
+    public TranspositionTable(int sizeMb) {
+        resize(sizeMb);
+    }
+
+    // 按 MB 设置表的大小（向下取 2 的幂个桶），原有内容全部丢弃，不能在搜索进行中调用
+    public void resize(int sizeMb) {
+        long bytes = Math.max(1, sizeMb) * 1024L * 1024L;
+        int buckets = Integer.highestOneBit((int) Math.min(bytes / BUCKET_BYTES, 1 << 26));
+        table = new long[buckets * BUCKET_LONGS];
+        bucketMask = buckets - 1;
+    }
+
+    public int sizeMb() {
+        return (int) ((long) table.length * 8 / (1024 * 1024));
+    }
+
+    // data 布局：0-31 位分值，32-39 位深度，40-41 位分值类型，42-57 位最佳走法，58-63 位代数
+    private static long pack(int score, int depth, int flag, int move, int age) {
+        return (score & 0xFFFFFFFFL) | ((long) (depth & 0xFF) << 32) | ((long) flag << 40)
+                | ((long) (move & 0xFFFF) << 42) | ((long) age << 58);
+    }
+
+    static int score(long entry) { return (int) entry; }
+    static int depth(long entry) { return (int) ((entry >>> 32) & 0xFF); }
+    static int flag(long entry) { return (int) ((entry >>> 40) & 0x3); }
+    static int move(long entry) { return (int) ((entry >>> 42) & 0xFFFF); }
+    private static int age(long entry) { return (int) (entry >>> 58); }
+
+    // 查找局面，命中时返回条目（data），未命中返回 0（有效条目的分值类型不为 0，所以不会是 0）
+    long probe(long hash) {
+        long[] t = table;
+        int base = (int) (hash & bucketMask) * BUCKET_LONGS;
+        for (int i = base; i < base + BUCKET_LONGS; i += 2) {
+            long data = t[i + 1];
+            if ((t[i] ^ data) == hash) return data;
+        }
+        return 0L;
+    }
+
+    // 条目的分值能否直接作为本节点的结果：深度足够且边界类型满足窗口
+    static int cutoffScore(long entry, int depth, int alpha, int beta, int ply, int mateValue) {
+        if (depth(entry) < depth) return MISS;
+        int score = scoreFromTT(score(entry), ply, mateValue);
+        int flag = flag(entry);
+        if (flag == EXACT) return score;
+        if (flag == LOWER && score >= beta) return score;
+        if (flag == UPPER && score <= alpha) return score;
+        return MISS;
+    }
+
+    // 杀棋分带有"距根节点的步数"，同一局面在不同深度出现时含义不同
+    // 写入时换算成"距本局面的步数"，读出时再按当前步数换算回来
+    static int scoreToTT(int score, int ply, int mateValue) {
+        if (score > mateValue - 1000) return score + ply;
+        if (score < -mateValue + 1000) return score - ply;
+        return score;
+    }
+
+    static int scoreFromTT(int score, int ply, int mateValue) {
+        if (score > mateValue - 1000) return score - ply;
+        if (score < -mateValue + 1000) return score + ply;
+        return score;
+    }
+
+    // 写入搜索结果：同一局面直接更新；否则替换桶里"最不值钱"的条目（空位 > 旧代数 > 浅深度）
+    // 挤掉了另一个局面的条目时返回 true（用于统计覆盖率）
+    boolean store(long hash, int depth, int score, int flag, int move) {
+        long[] t = table;
+        int base = (int) (hash & bucketMask) * BUCKET_LONGS;
+        int gen = generation;
+        int victim = base;
+        int victimValue = Integer.MAX_VALUE;
+        for (int i = base; i < base + BUCKET_LONGS; i += 2) {
+            long data = t[i + 1];
+            if ((t[i] ^ data) == hash) {
+                // 新结果没有最佳走法时保留原来的，供走法排序使用
+                if (move == 0) move = move(data);
+                victim = i;
+                break;
+            }
+            int value = data == 0 ? Integer.MIN_VALUE : depth(data) - 8 * ((gen - age(data)) & AGE_MASK);
+            if (value < victimValue) {
+                victimValue = value;
+                victim = i;
+            }
+        }
+        long old = t[victim + 1];
+        boolean overwrite = old != 0 && (t[victim] ^ old) != hash;
+        long data = pack(score, depth, flag, move, gen);
+        t[victim + 1] = data;
+        t[victim] = hash ^ data;
+        return overwrite;
+    }
+
+    // 每次开始新的搜索时调用
+    void newSearch() {
+        generation = (generation + 1) & AGE_MASK;
+    }
+
+    // 占用率（千分比）：抽样前 1000 个条目中属于当前代数的比例
+    public int hashfull() {
+        long[] t = table;
+        int gen = generation;
+        int samples = Math.min(1000, t.length / 2);
+        int used = 0;
+        for (int i = 0; i < samples; i++) {
+            long data = t[i * 2 + 1];
+            if (data != 0 && age(data) == gen) used++;
+        }
+        return used * 1000 / samples;
+    }
+
+    // 清空整个表（新对局或基准测试前调用）
+    public void clear() {
+        Arrays.fill(table, 0L);
+    }
+}
@@ -0,0 +1,326 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+// UCI 协议入口：java UciMain，从标准输入读命令、向标准输出写回复，可以接入图形界面和对局管理器
+// 支持 uci / isready / setoption（Hash、Threads）/ ucinewgame / position / go / stop / quit
+// 启动时不创建引擎：攻击表、Zobrist 键、估值表和置换表都等到第一次 isready / position / go 才初始化，uci 能立刻回复 uciok，
+// readyok 时这些都已建好；UCI 只用自己的 Engine，不会分配 AI 外观的默认置换表
+// position 里的走法逐个与合法走法比对，升变按后缀（q/r/b/n）执行；引擎自己搜索时只考虑升变为后
+public class UciMain {
+
+    private static final int MAX_HASH_MB = 4096;
+    private static final int MAX_THREADS = 64;
+
+    private final PrintStream out;
+
+    private int hashMb = AI.DEFAULT_HASH_MB;
+    private int threads = 1;
+    private Engine engine = null;
+    private Position position = null;
+
+    // 当前搜索：运行搜索的线程、本次搜索的根局面和开始时间
+    private Thread searchThread = null;
+    private final Position searchRoot = new Position();
+    private volatile long goNanos = 0;
+    // go infinite 时搜索结束后也要等到 stop 才能给出 bestmove
+    private boolean infinite = false;
+    private boolean stopReceived = false;
+
+    // 输出 info 行时复用的缓冲区（只在搜索线程上使用）
+    private final int[] pv = new int[Engine.MAX_SEARCH_DEPTH];
+    private final Position pvPos = new Position();
+    private final StringBuilder line = new StringBuilder(256);
+    // 校验 position 走法时使用的走法缓冲区
+    private final AI.IntList legal = new AI.IntList();
+
+    UciMain(PrintStream out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        UciMain uci = new UciMain(System.out);
+        uci.run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII)));
+    }
+
+    void run(BufferedReader in) throws IOException {
+        String command;
+        while ((command = in.readLine()) != null) {
+            if (!handle(command.trim())) break;
+        }
+        stopSearch();
+    }
+
+    // 处理一条命令，返回 false 表示应当退出
+    boolean handle(String command) {
+        String[] tokens = command.split("\\s+");
+        switch (tokens[0]) {
+            case "uci":
+                send("id name Chess");
+                send("id author arik-Ni");
+                send("option name Hash type spin default " + AI.DEFAULT_HASH_MB + " min 1 max " + MAX_HASH_MB);
+                send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                send("uciok");
+                break;
+            case "isready":
+                ensureEngine();
+                send("readyok");
+                break;
+            case "setoption":
+                setOption(tokens);
+                break;
+            case "ucinewgame":
+                stopSearch();
+                ensureEngine();
+                engine.tt.clear();
+                position = null;
+                break;
+            case "position":
+                stopSearch();
+                ensureEngine();
+                setPosition(tokens);
+                break;
+            case "go":
+                stopSearch();
+                ensureEngine();
+                go(tokens);
+                break;
+            case "stop":
+                stopSearch();
+                break;
+            case "quit":
+                return false;
+            default:
+                // UCI 要求忽略不认识的命令
+                break;
+        }
+        return true;
+    }
+
+    // 第一次需要时才创建引擎，这时 Hash / Threads 已经设置好，不会先分配一张默认大小的表再换掉
+    private void ensureEngine() {
+        if (engine != null) return;
+        // 载入初始局面并生成一次走法，触发 AI（Zobrist 键、估值表）和 Bitboards（攻击表）的类初始化
+        Position start = new Position();
+        Fen.load(start, Fen.START_FEN);
+        AI.generateMoves(start, true, legal);
+        engine = new Engine(hashMb);
+        engine.setThreads(threads);
+        engine.setIterationListener(this::report);
+    }
+
+    // setoption name <名字> value <值>
+    private void setOption(String[] tokens) {
+        String name = null, value = null;
+        for (int i = 1; i + 1 < tokens.length; i++) {
+            if (tokens[i].equals("name")) name = tokens[i + 1];
+            else if (tokens[i].equals("value")) value = tokens[i + 1];
+        }
+        if (name == null || value == null) return;
+        int v;
+        try {
+            v = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        stopSearch();
+        if (name.equalsIgnoreCase("Hash")) {
+            hashMb = Math.max(1, Math.min(MAX_HASH_MB, v));
+            if (engine != null) engine.setHashSize(hashMb);
+        } else if (name.equalsIgnoreCase("Threads")) {
+            threads = Math.max(1, Math.min(MAX_THREADS, v));
+            if (engine != null) engine.setThreads(threads);
+        }
+    }
+
+    // position startpos | fen <六个字段> [moves <走法>...]
+    private void setPosition(String[] tokens) {
+        int i = 1;
+        String fen;
+        if (i < tokens.length && tokens[i].equals("startpos")) {
+            fen = Fen.START_FEN;
+            i++;
+        } else if (i < tokens.length && tokens[i].equals("fen")) {
+            StringBuilder sb = new StringBuilder();
+            for (i++; i < tokens.length && !tokens[i].equals("moves"); i++) {
+                if (sb.length() > 0) sb.append(' ');
+                sb.append(tokens[i]);
+            }
+            fen = sb.toString();
+        } else {
+            return;
+        }
+        Position p = new Position();
+        try {
+            Fen.load(p, fen);
+        } catch (IllegalArgumentException e) {
+            send("info string " + e.getMessage());
+            return;
+        }
+        if (i < tokens.length && tokens[i].equals("moves")) {
+            // 走法按局面原样执行，这样重复局面的历史也会记下来；遇到不合法的走法就停下，后面的走法都不执行
+            for (i++; i < tokens.length; i++) {
+                int move = legalMove(p, tokens[i]);
+                if (move == 0) {
+                    send("info string illegal move " + tokens[i] + ", ignoring it and the moves after it");
+                    break;
+                }
+                AI.makeMove(p, move);
+                p.trimHistory();
+            }
+        }
+        position = p;
+    }
+
+    // go [depth N] [nodes N] [movetime N] [wtime N] [btime N] [winc N] [binc N] [infinite]
+    private void go(String[] tokens) {
+        if (position == null) setPosition(new String[]{"position", "startpos"});
+        int depth = Engine.MAX_SEARCH_DEPTH;
+        long nodes = 0, movetime = -1, wtime = -1, btime = -1, winc = 0, binc = 0;
+        boolean infiniteMode = false;
+        for (int i = 1; i < tokens.length; i++) {
+            String key = tokens[i];
+            if (key.equals("infinite")) {
+                infiniteMode = true;
+                continue;
+            }
+            if (i + 1 >= tokens.length) break;
+            long value;
+            try {
+                value = Long.parseLong(tokens[i + 1]);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            switch (key) {
+                case "depth": depth = (int) Math.max(1, Math.min(Engine.MAX_SEARCH_DEPTH, value)); break;
+                case "nodes": nodes = Math.max(1, value); break;
+                case "movetime": movetime = value; break;
+                case "wtime": wtime = value; break;
+                case "btime": btime = value; break;
+                case "winc": winc = value; break;
+                case "binc": binc = value; break;
+                default: continue;
+            }
+            i++;
+        }
+
+        boolean white = position.whiteToMove;
+        long clock = white ? wtime : btime;
+        // 只给了对方的时钟时按对方的时间分配（不能因此变成无限思考）
+        if (clock < 0) clock = white ? btime : wtime;
+        TimeManager tm;
+        if (infiniteMode) tm = TimeManager.infinite();
+        else if (movetime >= 0) tm = TimeManager.fixed(movetime);
+        else if (clock >= 0) tm = TimeManager.forClock(clock, white ? winc : binc);
+        else tm = TimeManager.infinite();
+
+        searchRoot.copyFrom(position);
+        synchronized (this) {
+            infinite = infiniteMode;
+            stopReceived = false;
+        }
+        int maxDepth = depth;
+        long maxNodes = nodes;
+        engine.clearStop();
+        goNanos = System.nanoTime();
+        searchThread = new Thread(() -> {
+            int best = engine.search(searchRoot, maxDepth, tm, maxNodes);
+            // go infinite：深度到顶提前结束时也要等 stop 才给出结果
+            synchronized (this) {
+                while (infinite && !stopReceived) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+            }
+            send("bestmove " + moveToUci(searchRoot, best));
+        }, "uci-search");
+        searchThread.start();
+    }
+
+    // 停止正在进行的搜索并等它输出 bestmove
+    private void stopSearch() {
+        Thread t = searchThread;
+        if (t == null) return;
+        engine.requestStop();
+        synchronized (this) {
+            stopReceived = true;
+            notifyAll();
+        }
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        searchThread = null;
+    }
+
+    // 每完成一轮迭代输出一行 info（在主搜索线程上调用）
+    private void report(int depth, int score, int bestMove) {
+        long elapsedMs = Math.max(1, (System.nanoTime() - goNanos) / 1_000_000L);
+        long nodes = engine.getProgressNodes();
+        int length = engine.principalVariation(searchRoot, bestMove, pv);
+
+        line.setLength(0);
+        line.append("info depth ").append(depth).append(" score ");
+        if (score > AI.MATE_VALUE - AI.MAX_PLY) line.append("mate ").append((AI.MATE_VALUE - score + 1) / 2);
+        else if (score < -AI.MATE_VALUE + AI.MAX_PLY) line.append("mate ").append(-(AI.MATE_VALUE + score) / 2);
+        else line.append("cp ").append(score / AI.EVAL_SCALE);
+        line.append(" nodes ").append(nodes)
+                .append(" nps ").append(nodes * 1000 / elapsedMs)
+                .append(" hashfull ").append(engine.getHashfull())
+                .append(" time ").append(elapsedMs)
+                .append(" pv");
+        pvPos.copyFrom(searchRoot);
+        for (int i = 0; i < length; i++) {
+            line.append(' ').append(moveToUci(pvPos, pv[i]));
+            AI.makeMove(pvPos, pv[i]);
+        }
+        send(line.toString());
+    }
+
+    // 在 p 的合法走法里找与 UCI 坐标记法 text 相同的走法，没有时返回 0
+    // 升变必须带后缀 q/r/b/n，其他走法不能带后缀
+    private int legalMove(Position p, String text) {
+        if (text.length() != 4 && text.length() != 5) return 0;
+        for (int k = 0; k < 4; k += 2) {
+            char file = text.charAt(k), rank = text.charAt(k + 1);
+            if (file < 'a' || file > 'h' || rank < '1' || rank > '8') return 0;
+        }
+        int parsed = AI.parseMove(text);
+        boolean white = p.whiteToMove;
+        AI.generateMoves(p, white, legal);
+        for (int k = 0; k < legal.size; k++) {
+            int move = legal.data[k];
+            if (move != (parsed & 0xFFF)) continue;
+            int to = move & 0x3F;
+            boolean promotion = Math.abs(p.board[move >> 6]) == 1 && (to < 8 || to >= 56);
+            if (promotion != (text.length() == 5) || (promotion && "qrbn".indexOf(text.charAt(4)) < 0)) return 0;
+            long undo = AI.makeMove(p, parsed);
+            boolean ok = !AI.isSquareAttacked(p, AI.findKing(p, white), !white);
+            AI.unmakeMove(p, parsed, undo);
+            return ok ? parsed : 0;
+        }
+        return 0;
+    }
+
+    // 坐标记法，兵走到底线时按 UCI 的要求总是带上升变棋子（升变为后也写 q）
+    private static String moveToUci(Position p, int move) {
+        if (move == 0) return "0000";
+        String text = AI.moveToString(move);
+        int from = (move >> 6) & 0x3F, to = move & 0x3F;
+        if (text.length() == 4 && Math.abs(p.board[from]) == 1 && (to / 8 == 0 || to / 8 == 7)) text += "q";
+        return text;
+    }
+
+    private void send(String message) {
+        synchronized (out) {
+            out.println(message);
+            out.flush();
+        }
+    }
+}